@@ -0,0 +1,87 @@
+package com.kv.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.client.SteamWebApiClient;
+import com.kv.config.MatchDetailsCacheConfig;
+import com.kv.config.RestTemplateInterceptor;
+import com.kv.config.SteamApiMetricsConfig;
+import com.kv.dao.AccountMatchHistoryStore;
+import com.kv.dao.MatchDetailsCodec;
+import com.kv.dao.MatchDetailsDaoFileStorageImpl;
+import com.kv.ratelimit.SteamApiKeyPool;
+import com.kv.service.SteamWebApiQueryService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ *     Builds the library's beans the way a host application would, minus everything not under test: the rate limiter is
+ *     left out (it would throttle the benchmark itself), and the RestTemplate is redirected to a
+ *     {@link SteamWebApiStubServer}.
+ * </p>
+ * The file storage DAO always writes into a fresh temp directory, removed by {@link #deleteRecursively(Path)}.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Storage only context: ObjectMapper, codec and file storage DAO.
+     */
+    public static AnnotationConfigApplicationContext storage(Path dataDirectory, Map<String, Object> properties) {
+        AnnotationConfigApplicationContext context = newContext(dataDirectory, properties);
+        context.register(MatchDetailsCodec.class, MatchDetailsDaoFileStorageImpl.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Full query service context, every Steam Web API call served by the given stub server.
+     */
+    public static AnnotationConfigApplicationContext queryService(Path dataDirectory, Map<String, Object> properties, SteamWebApiStubServer stubServer) {
+        AnnotationConfigApplicationContext context = newContext(dataDirectory, properties);
+        context.registerBean(RestTemplate.class);
+        context.register(MatchDetailsCodec.class, MatchDetailsDaoFileStorageImpl.class, MatchDetailsCacheConfig.class,
+                SteamApiMetricsConfig.class, SteamApiKeyPool.class, RestTemplateInterceptor.class,
+                AccountMatchHistoryStore.class, SteamWebApiClient.class, SteamWebApiQueryService.class);
+        context.refresh();
+
+        RestTemplate restTemplate = context.getBean(RestTemplate.class);
+        restTemplate.getInterceptors().add(context.getBean(RestTemplateInterceptor.class));
+        restTemplate.getInterceptors().add(stubServer.redirectingInterceptor());
+        return context;
+    }
+
+    public static Path createDataDirectory() throws IOException {
+        return Files.createTempDirectory("kv-benchmark-");
+    }
+
+    public static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory))
+            return;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+    private static AnnotationConfigApplicationContext newContext(Path dataDirectory, Map<String, Object> properties) {
+        Map<String, Object> benchmarkProperties = new HashMap<>(properties);
+        benchmarkProperties.put("kv.datasource.url", dataDirectory.toString());
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", benchmarkProperties));
+        context.registerBean(ObjectMapper.class);
+        return context;
+    }
+}
@@ -0,0 +1,113 @@
+package com.kv.benchmark;
+
+import com.kv.hero.dto.HeroesDto;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.matchdetails.dto.PlayersDto;
+import com.kv.util.HeroRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ *     Deterministic (seeded) generators of realistic Steam Web API payloads for the benchmarks: 10 player matches with
+ *     real hero IDs, match IDs/sequence numbers in today's ranges and matches spaced like a regular player's history
+ *     (30 to 120 minutes apart, newest first).
+ * </p>
+ * The same seed always produces the same data, so results of different runs are comparable.
+ */
+public final class BenchmarkFixtures {
+
+    public static final long SEED = 0x5EEDL;
+
+    /** Account whose history the benchmarks query, 32-bit account ID. */
+    public static final long ACCOUNT_ID = 123_456_789L;
+
+    /** Steam keeps the latest 500 matches of an account. */
+    public static final int MATCH_HISTORY_LIMIT = 500;
+
+    private static final long NEWEST_MATCH_ID = 7_900_000_000L;
+    private static final long NEWEST_MATCH_SEQ_NUM = 6_600_000_000L;
+    private static final int PLAYERS_PER_MATCH = 10;
+    private static final int MIN_MINUTES_BETWEEN_MATCHES = 30;
+    private static final int MAX_MINUTES_BETWEEN_MATCHES = 120;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param newestStartTime epoch second of the newest match
+     * @return {@code count} matches of {@link #ACCOUNT_ID}, newest first
+     */
+    public static List<MatchesDto> matchHistory(int count, long newestStartTime) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] heroIds = heroIds();
+        List<MatchesDto> matches = new ArrayList<>(count);
+        long matchId = NEWEST_MATCH_ID;
+        long matchSeqNum = NEWEST_MATCH_SEQ_NUM;
+        long startTime = newestStartTime;
+        for (int i = 0; i < count; i++) {
+            MatchesDto match = new MatchesDto();
+            match.setMatch_id(matchId);
+            match.setMatch_seq_num(matchSeqNum);
+            match.setStart_time(startTime);
+            match.setPlayers(players(random, heroIds));
+            matches.add(match);
+
+            //thousands of matches are played worldwide between two matches of the same account
+            matchId -= random.nextInt(5_000, 200_000);
+            matchSeqNum -= random.nextInt(5_000, 200_000);
+            startTime -= random.nextInt(MIN_MINUTES_BETWEEN_MATCHES, MAX_MINUTES_BETWEEN_MATCHES + 1) * 60L;
+        }
+        return matches;
+    }
+
+    /**
+     * @return full match details of the given history entry, with KDA and result filled in.
+     */
+    public static MatchDetailsDto matchDetails(MatchesDto match) {
+        SplittableRandom random = new SplittableRandom(SEED ^ match.getMatch_id());
+        MatchDetailsDto matchDetails = new MatchDetailsDto();
+        matchDetails.setMatch_id(match.getMatch_id());
+        matchDetails.setMatch_seq_num(match.getMatch_seq_num());
+        matchDetails.setStart_time(match.getStart_time());
+        matchDetails.setRadiant_win(random.nextBoolean());
+        List<PlayersDto> players = new ArrayList<>(PLAYERS_PER_MATCH);
+        for (PlayersDto historyPlayer : match.getPlayers()) {
+            PlayersDto player = new PlayersDto();
+            player.setAccount_id(historyPlayer.getAccount_id());
+            player.setPlayer_slot(historyPlayer.getPlayer_slot());
+            player.setHero_id(historyPlayer.getHero_id());
+            player.setKills(random.nextInt(0, 25));
+            player.setDeaths(random.nextInt(0, 15));
+            player.setAssists(random.nextInt(0, 35));
+            players.add(player);
+        }
+        matchDetails.setPlayers(players);
+        return matchDetails;
+    }
+
+    /**
+     * @return IDs of every hero of the bundled hero list.
+     */
+    public static int[] heroIds() {
+        return HeroRegistry.getInstance().getHeroes().stream().mapToInt(HeroesDto::getId).toArray();
+    }
+
+    private static List<PlayersDto> players(SplittableRandom random, int[] heroIds) {
+        List<PlayersDto> players = new ArrayList<>(PLAYERS_PER_MATCH);
+        int ownSlot = random.nextInt(PLAYERS_PER_MATCH);
+        for (int i = 0; i < PLAYERS_PER_MATCH; i++) {
+            PlayersDto player = new PlayersDto();
+            //radiant slots are 0-4, dire slots 128-132
+            player.setPlayer_slot(i < 5 ? i : 128 + i - 5);
+            player.setHero_id(heroIds[random.nextInt(heroIds.length)]);
+            //about a third of the players hide their account (anonymous account ID)
+            player.setAccount_id(i == ownSlot ? ACCOUNT_ID : random.nextInt(3) == 0 ? 4_294_967_295L : random.nextLong(10_000_000L, 1_500_000_000L));
+            players.add(player);
+        }
+        return players;
+    }
+}
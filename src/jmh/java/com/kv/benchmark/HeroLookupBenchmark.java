@@ -0,0 +1,59 @@
+package com.kv.benchmark;
+
+import com.kv.util.Dota2HeroesUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Dota2HeroesUtil#getHeroName(Integer)} / {@link Dota2HeroesUtil#getHeroId(String)}, cycling through every
+ * known hero so the lookups are not answered by a single hot entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeroLookupBenchmark {
+
+    private Integer[] heroIds;
+    private String[] heroNames;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        int[] ids = BenchmarkFixtures.heroIds();
+        heroIds = new Integer[ids.length];
+        heroNames = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            heroIds[i] = ids[i];
+            heroNames[i] = Dota2HeroesUtil.getHeroName(ids[i]);
+        }
+    }
+
+    @Benchmark
+    public String getHeroName() throws Exception {
+        return Dota2HeroesUtil.getHeroName(heroIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer getHeroId() {
+        return Dota2HeroesUtil.getHeroId(heroNames[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == heroIds.length ? 0 : index + 1;
+        return index;
+    }
+}
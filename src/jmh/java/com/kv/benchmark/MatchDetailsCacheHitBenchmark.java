@@ -0,0 +1,92 @@
+package com.kv.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.service.SteamWebApiQueryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SteamWebApiQueryService#getMatchDetails(String)} latency when the match is already in the in-memory cache,
+ * single threaded and under contention. The cache is warmed through the stub Steam server before measuring, every
+ * thread then reads random cached matches.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchDetailsCacheHitBenchmark {
+
+    private static final int CACHED_MATCH_COUNT = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class CachedMatches {
+
+        private Path dataDirectory;
+        private SteamWebApiStubServer stubServer;
+        private AnnotationConfigApplicationContext context;
+        SteamWebApiQueryService steamWebApiQueryService;
+        String[] matchIds;
+
+        @Setup
+        public void setUp() throws Exception {
+            List<MatchesDto> matchHistory = BenchmarkFixtures.matchHistory(CACHED_MATCH_COUNT, System.currentTimeMillis() / 1000);
+            dataDirectory = BenchmarkContext.createDataDirectory();
+            stubServer = new SteamWebApiStubServer(new ObjectMapper(), matchHistory, 0);
+            context = BenchmarkContext.queryService(dataDirectory, Map.of(), stubServer);
+            steamWebApiQueryService = context.getBean(SteamWebApiQueryService.class);
+
+            matchIds = matchHistory.stream().map(match -> String.valueOf(match.getMatch_id())).toArray(String[]::new);
+            for (String matchId : matchIds)
+                steamWebApiQueryService.getMatchDetails(matchId);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            context.close();
+            stubServer.close();
+            BenchmarkContext.deleteRecursively(dataDirectory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MatchIdPicker {
+
+        private final SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+
+        String next(String[] matchIds) {
+            return matchIds[random.nextInt(matchIds.length)];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MatchDetailsDto cacheHit(CachedMatches cachedMatches, MatchIdPicker picker) {
+        return cachedMatches.steamWebApiQueryService.getMatchDetails(picker.next(cachedMatches.matchIds));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public MatchDetailsDto cacheHitContended(CachedMatches cachedMatches, MatchIdPicker picker) {
+        return cachedMatches.steamWebApiQueryService.getMatchDetails(picker.next(cachedMatches.matchIds));
+    }
+}
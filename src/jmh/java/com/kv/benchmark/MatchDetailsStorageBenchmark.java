@@ -0,0 +1,107 @@
+package com.kv.benchmark;
+
+import com.kv.dao.MatchDetailsDao;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link com.kv.dao.MatchDetailsDaoFileStorageImpl} save and lookup (hit and miss) on a temp directory, per codec and
+ * with/without the match ID index. Every save writes a new match (fresh match ID), the way ingestion does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchDetailsStorageBenchmark {
+
+    private static final int STORED_MATCH_COUNT = 1_000;
+
+    @Param({"json", "smile"})
+    public String codec;
+
+    @Param({"true", "false"})
+    public boolean indexEnabled;
+
+    private Path dataDirectory;
+    private AnnotationConfigApplicationContext context;
+    private MatchDetailsDao<MatchDetailsDto> matchDetailsDao;
+
+    private String[] storedMatchIds;
+    private String[] absentMatchIds;
+    private MatchDetailsDto matchToSave;
+    private long nextSavedMatchId;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        dataDirectory = BenchmarkContext.createDataDirectory();
+        context = BenchmarkContext.storage(dataDirectory, Map.of(
+                "kv.datasource.codec", codec,
+                "kv.datasource.index.enabled", String.valueOf(indexEnabled)));
+        matchDetailsDao = context.getBean(MatchDetailsDao.class);
+
+        List<MatchesDto> matchHistory = BenchmarkFixtures.matchHistory(STORED_MATCH_COUNT, System.currentTimeMillis() / 1000);
+        storedMatchIds = new String[STORED_MATCH_COUNT];
+        absentMatchIds = new String[STORED_MATCH_COUNT];
+        for (int i = 0; i < STORED_MATCH_COUNT; i++) {
+            MatchesDto match = matchHistory.get(i);
+            matchDetailsDao.save(BenchmarkFixtures.matchDetails(match));
+            storedMatchIds[i] = String.valueOf(match.getMatch_id());
+            //history match IDs are thousands apart, so +1 is never stored
+            absentMatchIds[i] = String.valueOf(match.getMatch_id() + 1);
+        }
+
+        matchToSave = BenchmarkFixtures.matchDetails(matchHistory.get(0));
+        nextSavedMatchId = matchHistory.get(0).getMatch_id() + 1_000_000_000L;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        BenchmarkContext.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public MatchDetailsDto saveNewMatch() {
+        matchToSave.setMatch_id(nextSavedMatchId++);
+        return matchDetailsDao.save(matchToSave);
+    }
+
+    @Benchmark
+    public MatchDetailsDto findStoredMatch() {
+        return matchDetailsDao.findByMatchId(storedMatchIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public MatchDetailsDto findAbsentMatch() {
+        return matchDetailsDao.findByMatchId(absentMatchIds[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == STORED_MATCH_COUNT ? 0 : index + 1;
+        return index;
+    }
+}
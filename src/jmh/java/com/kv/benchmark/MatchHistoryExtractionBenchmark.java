@@ -0,0 +1,119 @@
+package com.kv.benchmark;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.matchdetails.dto.MatchHistoryDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.misc.dto.SteamWebApiResponseContainer;
+import com.kv.util.SteamWebApiResultExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON extraction of a GetMatchHistory response: {@link SteamWebApiResultExtractor} streaming the "result" object
+ * straight into {@link MatchHistoryDto}, against binding the whole response container and against the tree
+ * (Map) based binding the service used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchHistoryExtractionBenchmark {
+
+    @Param({"25", "100"})
+    public int matchesPerPage;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SteamWebApiResultExtractor<MatchHistoryDto> resultExtractor;
+    private SteamWebApiResultExtractor<SteamWebApiResponseContainer<MatchHistoryDto>> bodyExtractor;
+    private byte[] responseBody;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<MatchesDto> matches = BenchmarkFixtures.matchHistory(matchesPerPage, System.currentTimeMillis() / 1000);
+        responseBody = objectMapper.writeValueAsBytes(Map.of("result", Map.of(
+                "status", 1,
+                "num_results", matchesPerPage,
+                "total_results", BenchmarkFixtures.MATCH_HISTORY_LIMIT,
+                "results_remaining", BenchmarkFixtures.MATCH_HISTORY_LIMIT - matchesPerPage,
+                "matches", matches)));
+
+        JavaType containerType = objectMapper.getTypeFactory().constructParametricType(SteamWebApiResponseContainer.class, MatchHistoryDto.class);
+        resultExtractor = SteamWebApiResultExtractor.forResult(objectMapper, MatchHistoryDto.class);
+        bodyExtractor = SteamWebApiResultExtractor.forBody(objectMapper, containerType);
+    }
+
+    @Benchmark
+    public MatchHistoryDto extractResult() throws IOException {
+        return resultExtractor.extractData(new ByteArrayClientHttpResponse(responseBody));
+    }
+
+    @Benchmark
+    public MatchHistoryDto extractBody() throws IOException {
+        return bodyExtractor.extractData(new ByteArrayClientHttpResponse(responseBody)).getResult();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public MatchHistoryDto convertTree() throws IOException {
+        Map<String, Object> body = objectMapper.readValue(responseBody, Map.class);
+        return objectMapper.convertValue(body.get("result"), MatchHistoryDto.class);
+    }
+
+    /**
+     * Minimal 200 response over an in-memory body, so only the json handling is measured.
+     */
+    static final class ByteArrayClientHttpResponse implements ClientHttpResponse {
+
+        private final byte[] body;
+
+        ByteArrayClientHttpResponse(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(200);
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.kv.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.matchdetails.dto.MatchHistoryDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.service.SteamWebApiQueryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reading a full 500 match history through the stub Steam server: page by page with
+ * {@link SteamWebApiQueryService#getMatchHistory}, where every request waits for the previous page to be consumed, and
+ * with {@link SteamWebApiQueryService#forEachMatchHistoryPageAsync}, which requests the next page before handing the
+ * current one over. {@code latencyMillis} mimics the network round trip, {@code consumeTokensPerMatch} the caller's
+ * work per match ({@link Blackhole#consumeCPU(long)} tokens); prefetching pays off once both are non-zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchHistoryPaginationBenchmark {
+
+    private static final String ACCOUNT_ID = String.valueOf(BenchmarkFixtures.ACCOUNT_ID);
+
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    @Param({"0", "20000"})
+    public long consumeTokensPerMatch;
+
+    private Path dataDirectory;
+    private SteamWebApiStubServer stubServer;
+    private AnnotationConfigApplicationContext context;
+    private SteamWebApiQueryService steamWebApiQueryService;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<MatchesDto> matchHistory = BenchmarkFixtures.matchHistory(BenchmarkFixtures.MATCH_HISTORY_LIMIT, System.currentTimeMillis() / 1000);
+        dataDirectory = BenchmarkContext.createDataDirectory();
+        stubServer = new SteamWebApiStubServer(new ObjectMapper(), matchHistory, latencyMillis);
+        context = BenchmarkContext.queryService(dataDirectory, Map.of(), stubServer);
+        steamWebApiQueryService = context.getBean(SteamWebApiQueryService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        stubServer.close();
+        BenchmarkContext.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public long pageSerially(Blackhole blackhole) {
+        long matchCount = 0;
+        String startAtMatchId = null;
+        while (true) {
+            MatchHistoryDto page = steamWebApiQueryService.getMatchHistory(ACCOUNT_ID, startAtMatchId, null);
+            List<MatchesDto> matches = page.getMatches();
+            if (matches == null || matches.isEmpty())
+                return matchCount;
+            for (MatchesDto match : matches) {
+                consume(blackhole, match);
+                matchCount++;
+            }
+            if (page.getResults_remaining() == 0)
+                return matchCount;
+            startAtMatchId = String.valueOf(matches.get(matches.size() - 1).getMatch_id() - 1);
+        }
+    }
+
+    @Benchmark
+    public long prefetchNextPage(Blackhole blackhole) {
+        LongAdder matchCount = new LongAdder();
+        steamWebApiQueryService.forEachMatchHistoryPageAsync(ACCOUNT_ID, null, null, page -> true, matches -> {
+            for (MatchesDto match : matches) {
+                consume(blackhole, match);
+                matchCount.increment();
+            }
+        }).join();
+        return matchCount.sum();
+    }
+
+    private void consume(Blackhole blackhole, MatchesDto match) {
+        blackhole.consume(match);
+        if (consumeTokensPerMatch > 0)
+            Blackhole.consumeCPU(consumeTokensPerMatch);
+    }
+}
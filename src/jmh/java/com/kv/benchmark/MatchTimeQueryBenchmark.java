@@ -0,0 +1,69 @@
+package com.kv.benchmark;
+
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.service.CommonUtilityService;
+import com.kv.util.MatchTimeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CommonUtilityService#getMatchesPlayedInBetween} over a plain collection (full scan) and over a
+ * {@link MatchTimeIndex} (binary search), for a two day window in the middle of the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchTimeQueryBenchmark {
+
+    private static final long NEWEST_START_TIME = MatchTimeIndex.istDayStartEpochSecond(LocalDate.of(2024, 10, 1));
+
+    @Param({"100", "500", "5000"})
+    public int matchCount;
+
+    private List<MatchesDto> matches;
+    private MatchTimeIndex matchTimeIndex;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    @Setup
+    public void setUp() {
+        matches = BenchmarkFixtures.matchHistory(matchCount, NEWEST_START_TIME);
+        matchTimeIndex = MatchTimeIndex.of(matches);
+
+        long middleStartTime = matches.get(matchCount / 2).getStart_time();
+        fromDate = LocalDate.ofEpochDay(MatchTimeIndex.istEpochDay(middleStartTime));
+        toDate = fromDate.plusDays(1);
+    }
+
+    @Benchmark
+    public Set<MatchesDto> scanCollection() {
+        return CommonUtilityService.getMatchesPlayedInBetween(fromDate, toDate, matches);
+    }
+
+    @Benchmark
+    public Set<MatchesDto> searchIndex() {
+        return CommonUtilityService.getMatchesPlayedInBetween(fromDate, toDate, matchTimeIndex);
+    }
+
+    @Benchmark
+    public MatchTimeIndex buildIndex() {
+        return MatchTimeIndex.of(matches);
+    }
+}
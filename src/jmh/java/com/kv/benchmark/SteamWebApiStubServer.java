@@ -0,0 +1,166 @@
+package com.kv.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.metrics.SteamEndpoint;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Local stand-in for the Steam Web API so pagination and cache benchmarks run offline and measure the library, not
+ *     the internet. Serves a fixed match history ({@link BenchmarkFixtures#matchHistory(int, long)}) the way Steam does:
+ *     GetMatchHistory pages newest first from {@code start_at_match_id} (inclusive) with {@code matches_requested}
+ *     (default and max 100), and GetMatchDetails for every match of the history.
+ * </p>
+ * Every response can be delayed by a fixed latency to mimic the network round trip. Requests are routed by path with
+ * {@link SteamEndpoint#fromPath(String)}, so any host/version prefix is accepted; see {@link #redirectingInterceptor()}.
+ */
+public class SteamWebApiStubServer implements AutoCloseable {
+
+    private static final int STATUS_OK = 1;
+    private static final int MAX_MATCHES_REQUESTED = 100;
+
+    private final ObjectMapper objectMapper;
+    private final List<MatchesDto> matchHistory;
+    private final Map<Long, MatchDetailsDto> matchDetailsById = new HashMap<>();
+    private final long latencyMillis;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final HttpServer server;
+
+    /**
+     * Starts the server on an ephemeral loopback port.
+     *
+     * @param matchHistory  account history, newest first
+     * @param latencyMillis delay added to every response
+     */
+    public SteamWebApiStubServer(ObjectMapper objectMapper, List<MatchesDto> matchHistory, long latencyMillis) throws IOException {
+        this.objectMapper = objectMapper;
+        this.matchHistory = List.copyOf(matchHistory);
+        this.latencyMillis = latencyMillis;
+        matchHistory.forEach(match -> matchDetailsById.put(match.getMatch_id(), BenchmarkFixtures.matchDetails(match)));
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public URI getBaseUri() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return interceptor sending every request of a RestTemplate to this server, keeping path and query.
+     */
+    public ClientHttpRequestInterceptor redirectingInterceptor() {
+        URI baseUri = getBaseUri();
+        return (request, body, execution) -> {
+            URI stubUri = UriComponentsBuilder.fromUri(request.getURI())
+                    .scheme(baseUri.getScheme())
+                    .host(baseUri.getHost())
+                    .port(baseUri.getPort())
+                    .build(true)
+                    .toUri();
+            HttpRequest stubRequest = new HttpRequestWrapper(request) {
+                @Override
+                public URI getURI() {
+                    return stubUri;
+                }
+            };
+            return execution.execute(stubRequest, body);
+        };
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            if (latencyMillis > 0)
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+
+            Map<String, String> queryParams = queryParams(exchange.getRequestURI());
+            Object result = switch (SteamEndpoint.fromPath(exchange.getRequestURI().getPath())) {
+                case GET_MATCH_HISTORY -> matchHistoryPage(queryParams);
+                case GET_MATCH_DETAILS -> matchDetailsById.get(parseLong(queryParams.get("match_id"), -1));
+                default -> null;
+            };
+
+            if (result == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] responseBody = objectMapper.writeValueAsBytes(Map.of("result", result));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(responseBody);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<String, Object> matchHistoryPage(Map<String, String> queryParams) {
+        long startAtMatchId = parseLong(queryParams.get("start_at_match_id"), Long.MAX_VALUE);
+        int matchesRequested = (int) Math.min(parseLong(queryParams.get("matches_requested"), MAX_MATCHES_REQUESTED), MAX_MATCHES_REQUESTED);
+
+        int from = 0;
+        while (from < matchHistory.size() && matchHistory.get(from).getMatch_id() > startAtMatchId)
+            from++;
+        int to = Math.min(from + matchesRequested, matchHistory.size());
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("status", STATUS_OK);
+        page.put("num_results", to - from);
+        page.put("total_results", matchHistory.size());
+        page.put("results_remaining", matchHistory.size() - to);
+        page.put("matches", matchHistory.subList(from, to));
+        return page;
+    }
+
+    private static Map<String, String> queryParams(URI uri) {
+        Map<String, String> queryParams = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null)
+            return queryParams;
+        for (String param : query.split("&")) {
+            int separator = param.indexOf('=');
+            if (separator > 0)
+                queryParams.put(param.substring(0, separator), URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return queryParams;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,10 @@
+package com.kv.cache;
+
+/**
+ * One entry of a {@link PersistableCache} snapshot.
+ *
+ * @param frequent true if the entry was requested repeatedly, ex: it sat in the protected segment of a {@link SegmentedLruCache}
+ * @param ageNanos time since the value was written, keeps expire-after-write deadlines across restarts
+ */
+public record CacheSnapshotEntry<K, V>(K key, V value, boolean frequent, long ageNanos) {
+}
@@ -0,0 +1,16 @@
+package com.kv.cache;
+
+/**
+ * Point in time snapshot of the counters maintained by a {@link LocalCache}.
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount) {
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
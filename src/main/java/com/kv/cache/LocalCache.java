@@ -0,0 +1,23 @@
+package com.kv.cache;
+
+/**
+ * In-memory cache tier sitting in front of the local DB and the Steam Web API.
+ * Implementations must be safe to use from many request threads at once.
+ */
+public interface LocalCache<K, V> {
+
+    /**
+     * @return cached value for given key, or null if absent/expired.
+     */
+    V get(K key);
+
+    void put(K key, V value);
+
+    void invalidate(K key);
+
+    void invalidateAll();
+
+    long size();
+
+    CacheStats stats();
+}
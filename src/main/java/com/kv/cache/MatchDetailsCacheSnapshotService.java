@@ -0,0 +1,225 @@
+package com.kv.cache;
+
+import com.kv.dao.MatchDetailsCodec;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ *     Warm start of the "GetMatchDetails" cache ({@code LocalCache<String, MatchDetailsDto>}): its hottest entries are
+ *     snapshotted to {@code <kv.datasource.url>/dota2/CACHE/match-details-cache.bin} (temp file + atomic move)
+ *     periodically and on shutdown, and loaded back on startup, so the first requests after a restart do not all fall
+ *     through to disk or Steam.
+ * </p>
+ * <p>
+ *     Snapshots copy the cache one lock stripe at a time and are encoded and written on a background thread. Each entry
+ *     keeps its segment (frequently requested or not), its place in the LRU order and its age, so eviction and expiry
+ *     carry on as if there had been no restart. Values are stored with {@link MatchDetailsCodec}.
+ * </p>
+ * <p>
+ *     Loading runs in the background after startup: records are read sequentially, decoded in parallel and restored in
+ *     snapshot order. Entries cached by requests in the meantime are kept. Only caches implementing
+ *     {@link PersistableCache} are snapshotted.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.cache.match-details.snapshot.enabled -> false disables snapshots and warm start (default true)</li>
+ *     <li>kv.cache.match-details.snapshot.file -> snapshot location (default {@code <kv.datasource.url>/dota2/CACHE/match-details-cache.bin})</li>
+ *     <li>kv.cache.match-details.snapshot.interval-seconds -> snapshot interval, 0 snapshots on shutdown only (default 300)</li>
+ *     <li>kv.cache.match-details.snapshot.max-entries -> hottest entries kept per snapshot (default 10000)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "kv.cache.match-details.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class MatchDetailsCacheSnapshotService {
+
+    private static final int MAGIC = 0x4B564343; // "KVCC"
+    private static final int VERSION = 1;
+
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String CACHE_DIRECTORY_NAME = "CACHE";
+    private static final String SNAPSHOT_FILE_NAME = "match-details-cache.bin";
+
+    @Autowired
+    private LocalCache<String, MatchDetailsDto> cacheForMatchDetailsAPI;
+
+    @Autowired
+    private MatchDetailsCodec matchDetailsCodec;
+
+    private final Path snapshotFile;
+    private final long intervalSeconds;
+    private final int maxEntries;
+
+    private PersistableCache<String, MatchDetailsDto> cache;
+    private ScheduledExecutorService snapshotExecutor;
+    //no snapshot may replace the file before it was loaded
+    private volatile boolean loaded;
+
+    public MatchDetailsCacheSnapshotService(Environment environment) {
+        String snapshotFileProperty = environment.getProperty("kv.cache.match-details.snapshot.file");
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        if (snapshotFileProperty != null)
+            this.snapshotFile = Path.of(snapshotFileProperty);
+        else
+            this.snapshotFile = dbBaseUrl != null ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, CACHE_DIRECTORY_NAME, SNAPSHOT_FILE_NAME) : null;
+        this.intervalSeconds = environment.getProperty("kv.cache.match-details.snapshot.interval-seconds", Long.class, 300L);
+        this.maxEntries = environment.getProperty("kv.cache.match-details.snapshot.max-entries", Integer.class, 10_000);
+    }
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        if (snapshotFile == null)
+            return;
+        if (!(cacheForMatchDetailsAPI instanceof PersistableCache<?, ?> persistableCache)) {
+            log.info("MatchDetailsCacheSnapshotService: {} does not support snapshots, warm start disabled", cacheForMatchDetailsAPI.getClass().getSimpleName());
+            return;
+        }
+        this.cache = (PersistableCache<String, MatchDetailsDto>) persistableCache;
+
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "match-details-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.execute(this::load);
+        if (intervalSeconds > 0)
+            snapshotExecutor.scheduleWithFixedDelay(this::snapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Waits for a running load or snapshot, then writes the final snapshot.
+     */
+    @PreDestroy
+    public void close() {
+        if (snapshotExecutor == null)
+            return;
+        snapshotExecutor.shutdown();
+        try {
+            if (!snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS))
+                log.warn("MatchDetailsCacheSnapshotService: background snapshot still running, writing the final one anyway");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    /**
+     * Writes a snapshot of the hottest cache entries.
+     *
+     * @return entries written, -1 if skipped or failed.
+     */
+    public synchronized int snapshot() {
+        if (cache == null || !loaded)
+            return -1;
+
+        long startNanos = System.nanoTime();
+        List<CacheSnapshotEntry<String, MatchDetailsDto>> entries = cache.snapshot(maxEntries);
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            long nowMillis = System.currentTimeMillis();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (CacheSnapshotEntry<String, MatchDetailsDto> entry : entries) {
+                    byte[] record = matchDetailsCodec.encode(entry.value());
+                    out.writeUTF(entry.key());
+                    out.writeBoolean(entry.frequent());
+                    //wall clock write time, so the downtime counts towards the age on restore
+                    out.writeLong(nowMillis - TimeUnit.NANOSECONDS.toMillis(entry.ageNanos()));
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("MatchDetailsCacheSnapshotService: snapshotted {} entries in {} ms", entries.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            return entries.size();
+        } catch (IOException e) {
+            log.error("Error occurred while writing match details cache snapshot: {}", snapshotFile, e);
+            return -1;
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private void load() {
+        try {
+            if (!Files.exists(snapshotFile))
+                return;
+
+            long startNanos = System.nanoTime();
+            List<SnapshotRecord> records = readRecords();
+            MatchDetailsDto[] values = new MatchDetailsDto[records.size()];
+            IntStream.range(0, records.size()).parallel().forEach(i -> {
+                try {
+                    values[i] = matchDetailsCodec.decode(records.get(i).record());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            //sequential, restoring in snapshot order rebuilds the LRU order
+            int restored = 0;
+            for (int i = 0; i < records.size(); i++) {
+                SnapshotRecord record = records.get(i);
+                if (cache.restore(new CacheSnapshotEntry<>(record.key(), values[i], record.frequent(), record.ageNanos())))
+                    restored++;
+            }
+            log.info("MatchDetailsCacheSnapshotService: restored {} of {} snapshotted entries in {} ms", restored, records.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Error occurred while reading match details cache snapshot, starting cold: {}", snapshotFile, e);
+        } finally {
+            loaded = true;
+        }
+    }
+
+    private List<SnapshotRecord> readRecords() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Unknown match details cache snapshot format");
+            int count = in.readInt();
+            long nowMillis = System.currentTimeMillis();
+            List<SnapshotRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                boolean frequent = in.readBoolean();
+                long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - in.readLong()));
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                records.add(new SnapshotRecord(key, frequent, ageNanos, record));
+            }
+            return records;
+        }
+    }
+
+    private record SnapshotRecord(String key, boolean frequent, long ageNanos, byte[] record) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.kv.cache;
+
+import java.util.List;
+
+/**
+ * {@link LocalCache} whose contents, including the access history its eviction policy relies on, can be exported and
+ * restored, ex: to warm start after a restart.
+ */
+public interface PersistableCache<K, V> extends LocalCache<K, V> {
+
+    /**
+     * Copies the entries without blocking readers for longer than one lock stripe at a time.
+     *
+     * @return at most {@code maxEntries} of the hottest live entries, coldest first; restoring them in this order
+     * reproduces the eviction order.
+     */
+    List<CacheSnapshotEntry<K, V>> snapshot(int maxEntries);
+
+    /**
+     * Restores a snapshotted entry unless the key is already cached (a live value is never older than a snapshot).
+     * Expired entries are skipped.
+     *
+     * @return false if the entry was skipped.
+     */
+    boolean restore(CacheSnapshotEntry<K, V> entry);
+}
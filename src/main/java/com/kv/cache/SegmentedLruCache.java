@@ -0,0 +1,287 @@
+package com.kv.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, lock-striped cache using a segmented LRU eviction policy.
+ * <p>
+ * Keys are spread over a fixed number of stripes, each guarded by its own lock. Every stripe keeps two LRU lists:
+ * new entries land in the <i>probation</i> segment and are promoted to the <i>protected</i> segment on their second hit.
+ * Eviction always prefers the least recently used probation entry, so a burst of one-off lookups (ex: a sweep over
+ * thousands of distinct match IDs) cannot flush out the frequently requested entries.
+ * </p>
+ * Entries can optionally expire a fixed duration after they were written. Snapshots keep each entry's segment and
+ * its position in the LRU order, so a restored cache evicts the same entries the original one would have.
+ */
+public class SegmentedLruCache<K, V> implements PersistableCache<K, V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final double PROTECTED_SEGMENT_RATIO = 0.8;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeMask;
+    private final long expireAfterWriteNanos;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    public SegmentedLruCache(long maximumSize) {
+        this(maximumSize, Duration.ZERO, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param maximumSize     upper bound of entries held across all stripes.
+     * @param expireAfterWrite entries older than this are treated as absent; zero or negative disables expiry.
+     * @param concurrencyLevel expected number of concurrently writing threads, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(long maximumSize, Duration expireAfterWrite, int concurrencyLevel) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        int stripeCount = ceilingPowerOfTwo((int) Math.min(Math.min(Math.max(1, concurrencyLevel), maximumSize), 1 << 16));
+        int stripeCapacity = (int) Math.max(1, (maximumSize + stripeCount - 1) / stripeCount);
+
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+        this.stripeMask = stripeCount - 1;
+        this.expireAfterWriteNanos = expireAfterWrite == null || expireAfterWrite.isNegative() ? 0 : expireAfterWrite.toNanos();
+    }
+
+    @Override
+    public V get(K key) {
+        Objects.requireNonNull(key);
+        Stripe<K, V> stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Node<V> node = stripe.protectedSegment.get(key);
+            if (node == null) {
+                node = stripe.probationSegment.remove(key);
+                if (node != null) {
+                    stripe.promote(key, node);
+                }
+            }
+            if (node == null) {
+                missCount.increment();
+                return null;
+            }
+            if (isExpired(node)) {
+                stripe.remove(key);
+                expirationCount.increment();
+                missCount.increment();
+                return null;
+            }
+            hitCount.increment();
+            return node.value;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Stripe<K, V> stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Node<V> node = new Node<>(value, expireAfterWriteNanos > 0 ? System.nanoTime() : 0L);
+            if (stripe.protectedSegment.containsKey(key)) {
+                stripe.protectedSegment.put(key, node);
+                return;
+            }
+            stripe.probationSegment.put(key, node);
+            evictionCount.add(stripe.evictIfOversized());
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        Objects.requireNonNull(key);
+        Stripe<K, V> stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            stripe.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.probationSegment.clear();
+                stripe.protectedSegment.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public List<CacheSnapshotEntry<K, V>> snapshot(int maxEntries) {
+        List<CacheSnapshotEntry<K, V>> probationEntries = new ArrayList<>();
+        List<CacheSnapshotEntry<K, V>> protectedEntries = new ArrayList<>();
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                long nowNanos = System.nanoTime();
+                //both segments iterate from their eviction candidate onwards
+                stripe.probationSegment.forEach((key, node) -> addLive(probationEntries, key, node, false, nowNanos));
+                stripe.protectedSegment.forEach((key, node) -> addLive(protectedEntries, key, node, true, nowNanos));
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        //probation entries are evicted first, so they are the coldest; over the limit drop them from the cold end
+        List<CacheSnapshotEntry<K, V>> entries = new ArrayList<>(probationEntries.size() + protectedEntries.size());
+        entries.addAll(probationEntries);
+        entries.addAll(protectedEntries);
+        int overLimit = entries.size() - Math.max(0, maxEntries);
+        return overLimit > 0 ? new ArrayList<>(entries.subList(overLimit, entries.size())) : entries;
+    }
+
+    @Override
+    public boolean restore(CacheSnapshotEntry<K, V> entry) {
+        Objects.requireNonNull(entry.key());
+        Objects.requireNonNull(entry.value());
+        long writeNanos = expireAfterWriteNanos > 0 ? System.nanoTime() - Math.max(0, entry.ageNanos()) : 0L;
+        Node<V> node = new Node<>(entry.value(), writeNanos);
+        if (isExpired(node))
+            return false;
+
+        Stripe<K, V> stripe = stripeFor(entry.key());
+        stripe.lock.lock();
+        try {
+            if (stripe.protectedSegment.containsKey(entry.key()) || stripe.probationSegment.containsKey(entry.key()))
+                return false;
+            if (entry.frequent())
+                stripe.promote(entry.key(), node);
+            else
+                stripe.probationSegment.put(entry.key(), node);
+            stripe.evictIfOversized();
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void addLive(List<CacheSnapshotEntry<K, V>> entries, K key, Node<V> node, boolean frequent, long nowNanos) {
+        if (!isExpired(node))
+            entries.add(new CacheSnapshotEntry<>(key, node.value, frequent, expireAfterWriteNanos > 0 ? nowNanos - node.writeNanos : 0L));
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), expirationCount.sum());
+    }
+
+    private boolean isExpired(Node<V> node) {
+        return expireAfterWriteNanos > 0 && System.nanoTime() - node.writeNanos >= expireAfterWriteNanos;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & stripeMask];
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final long writeNanos;
+
+        Node(V value, long writeNanos) {
+            this.value = value;
+            this.writeNanos = writeNanos;
+        }
+    }
+
+    private static final class Stripe<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final int capacity;
+        final int protectedCapacity;
+        // insertion ordered, promotion removes and re-inserts so head is always the eviction candidate
+        final LinkedHashMap<K, Node<V>> probationSegment = new LinkedHashMap<>();
+        // access ordered, head is the least recently used protected entry
+        final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, (int) (capacity * PROTECTED_SEGMENT_RATIO));
+        }
+
+        int size() {
+            return probationSegment.size() + protectedSegment.size();
+        }
+
+        void remove(K key) {
+            if (protectedSegment.remove(key) == null) {
+                probationSegment.remove(key);
+            }
+        }
+
+        /**
+         * Moves an entry hit while on probation into the protected segment, demoting the least recently used
+         * protected entry back to probation when the protected segment overflows.
+         */
+        void promote(K key, Node<V> node) {
+            protectedSegment.put(key, node);
+            if (protectedSegment.size() > protectedCapacity) {
+                Iterator<Map.Entry<K, Node<V>>> iterator = protectedSegment.entrySet().iterator();
+                Map.Entry<K, Node<V>> eldest = iterator.next();
+                iterator.remove();
+                probationSegment.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        /**
+         * @return number of entries evicted to get the stripe back within its capacity.
+         */
+        int evictIfOversized() {
+            int evicted = 0;
+            while (size() > capacity) {
+                LinkedHashMap<K, Node<V>> victimSegment = probationSegment.isEmpty() ? protectedSegment : probationSegment;
+                Iterator<K> iterator = victimSegment.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.kv.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads for the same key.
+ * <p>
+ * The first caller for a key runs the loader, every other caller arriving while that load is in flight waits on the
+ * same future and receives the same result (or the same exception). Once the load completes the key is released, so
+ * later calls load again - callers are expected to consult their cache before coming here.
+ * </p>
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightCalls = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCallCount = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            coalescedCallCount.increment();
+            return await(inFlightCall);
+        }
+
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCalls.remove(key, call);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #execute(Object, Supplier)}: the first caller for a key starts the load, every
+     * caller arriving before it completes gets the same future. Shares in-flight loads with {@link #execute}.
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            coalescedCallCount.increment();
+            return inFlightCall;
+        }
+
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException | Error e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, error) -> {
+            //released before completing, so a caller reacting to the result already starts a new load
+            inFlightCalls.remove(key, call);
+            if (error != null)
+                call.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            else
+                call.complete(value);
+        });
+        return call;
+    }
+
+    public int inFlightCount() {
+        return inFlightCalls.size();
+    }
+
+    /**
+     * @return number of calls which were served by joining another caller's load.
+     */
+    public long coalescedCallCount() {
+        return coalescedCallCount.sum();
+    }
+
+    private V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
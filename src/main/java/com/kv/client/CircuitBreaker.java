@@ -0,0 +1,152 @@
+package com.kv.client;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * <p>
+ *     Count based circuit breaker of one Steam Web API endpoint. While CLOSED the outcomes of the last
+ *     {@code windowSize} calls are kept in a ring buffer; once at least {@code minimumCalls} were recorded and the failure
+ *     rate reaches {@code failureRateThreshold} the breaker OPENs and rejects every call for {@code openDurationNanos}.
+ * </p>
+ * After that a single probe call is let through (HALF_OPEN): its success closes the breaker with an empty window, its
+ * failure opens it again. Calls started before the breaker opened are not recorded any more.
+ */
+@Log4j2
+public class CircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    //ring buffer of the last outcomes, true = failed
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int recordedCalls;
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold, long openDurationNanos) {
+        this.name = name;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.clamp(minimumCalls, 1, outcomes.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationNanos;
+    }
+
+    /**
+     * @return permit to report the outcome of the call to, null if the call is rejected.
+     */
+    public synchronized Permit tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return new Permit(false);
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openDurationNanos)
+                    return null;
+                transitionTo(State.HALF_OPEN);
+                //fall through to hand out the probe
+            default:
+                if (probeInFlight)
+                    return null;
+                probeInFlight = true;
+                return new Permit(true);
+        }
+    }
+
+    /**
+     * @return false while calls are rejected, without taking the probe permit.
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedAtNanos >= openDurationNanos;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private synchronized void onReleased(boolean probe) {
+        if (probe)
+            probeInFlight = false;
+    }
+
+    private synchronized void onResult(boolean probe, boolean failed) {
+        if (probe) {
+            probeInFlight = false;
+            if (failed) {
+                openedAtNanos = System.nanoTime();
+                transitionTo(State.OPEN);
+            } else {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED)
+            return;
+
+        if (recordedCalls == outcomes.length) {
+            if (outcomes[nextOutcome])
+                failedCalls--;
+        } else {
+            recordedCalls++;
+        }
+        outcomes[nextOutcome] = failed;
+        if (failed)
+            failedCalls++;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+
+        if (failed && recordedCalls >= minimumCalls && failedCalls >= failureRateThreshold * recordedCalls) {
+            openedAtNanos = System.nanoTime();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        if (newState == State.CLOSED || newState == State.OPEN) {
+            nextOutcome = 0;
+            recordedCalls = 0;
+            failedCalls = 0;
+        }
+        if (state != newState)
+            log.warn("Circuit breaker {}: {} -> {}", name, state, newState);
+        state = newState;
+    }
+
+    public final class Permit {
+
+        private final boolean probe;
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        public void onSuccess() {
+            onResult(probe, false);
+        }
+
+        public void onFailure() {
+            onResult(probe, true);
+        }
+
+        /**
+         * The call was not sent (ex: rate limited) or its outcome says nothing about the endpoint (ex: the caller's
+         * deadline ran out first).
+         */
+        public void release() {
+            onReleased(probe);
+        }
+    }
+}
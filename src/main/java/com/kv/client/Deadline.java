@@ -0,0 +1,61 @@
+package com.kv.client;
+
+import java.time.Duration;
+
+/**
+ * <p>
+ *     Time budget of one logical call, shared by every Steam Web API request it issues (pagination, fallbacks, hedges):
+ *     each request may only use what is left of it, and no request is sent once it is spent.
+ * </p>
+ * Based on {@link System#nanoTime()}, {@link #NONE} never expires.
+ */
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @return deadline {@code budget} from now, {@link #NONE} for a zero or negative budget.
+     */
+    public static Deadline after(Duration budget) {
+        return budget.isZero() || budget.isNegative() ? NONE : new Deadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    public static Deadline afterMillis(long budgetMillis) {
+        return after(Duration.ofMillis(budgetMillis));
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * @return nanos left, {@link Long#MAX_VALUE} when unbounded, zero or negative once expired.
+     */
+    public long remainingNanos() {
+        return bounded ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return bounded && remainingNanos() <= 0;
+    }
+
+    /**
+     * @return the given timeout, shortened to what is left of this deadline.
+     */
+    public Duration cap(Duration timeout) {
+        return bounded ? Duration.ofNanos(Math.max(0, Math.min(timeout.toNanos(), remainingNanos()))) : timeout;
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[remainingMs=" + remainingNanos() / 1_000_000 + "]" : "Deadline[none]";
+    }
+}
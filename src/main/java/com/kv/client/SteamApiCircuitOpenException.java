@@ -0,0 +1,13 @@
+package com.kv.client;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Fails a Steam Web API request whose endpoint's {@link CircuitBreaker} is open; the request was never sent.
+ */
+public class SteamApiCircuitOpenException extends RestClientException {
+
+    public SteamApiCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.kv.client;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Fails a Steam Web API request once the {@link Deadline} of the call it belongs to is spent, either before it was sent
+ * or while waiting for its response.
+ */
+public class SteamApiDeadlineExceededException extends RestClientException {
+
+    public SteamApiDeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,446 @@
+package com.kv.client;
+
+import com.kv.config.RestTemplateInterceptor;
+import com.kv.metrics.StatusClass;
+import com.kv.metrics.SteamApiMetricsRecorder;
+import com.kv.metrics.SteamEndpoint;
+import com.kv.ratelimit.AimdConcurrencyLimiter;
+import com.kv.ratelimit.SteamApiKeyPool;
+import com.kv.ratelimit.SteamApiRateLimitExceededException;
+import com.kv.ratelimit.SteamApiRateLimiter;
+import com.kv.util.SteamWebApiResultExtractor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ *     Asynchronous transport of every Steam Web API GET issued by {@link com.kv.service.SteamWebApiQueryService}.
+ * </p>
+ * <p>
+ *     When the pooled Steam HTTP client is enabled ({@code kv.steam.http.enabled}, see
+ *     {@link com.kv.config.SteamHttpClientConfig}) requests are fully non-blocking: the rate limit permit is awaited
+ *     without holding a thread, the request is sent with {@link HttpClient#sendAsync} and, once the headers arrived, the
+ *     body is streamed (gunzipped on the fly) straight into the extractor on a virtual thread, so no request holds a
+ *     platform thread or a buffered copy of its body. Metrics, rate limiting and key
+ *     rotation are applied here, as {@link RestTemplateInterceptor} does for the RestTemplate; 4xx / 5xx responses
+ *     fail the future with the same {@link HttpClientErrorException} / {@link HttpServerErrorException} the RestTemplate
+ *     throws. At most {@code kv.steam.http.max-connections} requests are in flight on the client, further ones wait
+ *     (without holding a thread) for a slot, up to their read timeout / deadline, and then fail with
+ *     {@link SteamApiRateLimitExceededException} without being sent.
+ * </p>
+ * <p>
+ *     Otherwise the host application's RestTemplate (and its interceptors) stays the transport, each call running on its
+ *     own virtual thread.
+ * </p>
+ * <p>
+ *     On both transports every endpoint has its own {@link CircuitBreaker}: 5xx responses, I/O errors and read timeouts
+ *     count as failures, a sustained failure rate fails further requests fast with {@link SteamApiCircuitOpenException}
+ *     until a probe succeeds again. A {@link Deadline} caps the wait for a response and fails the request with
+ *     {@link SteamApiDeadlineExceededException} once spent; that is the caller's budget running out, not a sign of an
+ *     unhealthy endpoint, so it is not counted as a failure.
+ * </p>
+ * <p>
+ *     Requests still unanswered after {@code kv.steam.hedge.delay-ms} are hedged: the same GET is sent once more and the
+ *     first successful response wins. Set the delay around the endpoint's p95 latency, hedges use rate limit permits like
+ *     any other request; endpoints whose breaker is not closed are never hedged.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.steam.circuit-breaker.enabled -> false disables the circuit breakers (default true)</li>
+ *     <li>kv.steam.circuit-breaker.window-size -> calls whose outcome is kept per endpoint (default 20)</li>
+ *     <li>kv.steam.circuit-breaker.minimum-calls -> calls recorded before the breaker may open (default 5)</li>
+ *     <li>kv.steam.circuit-breaker.failure-rate-threshold -> failure rate opening the breaker (default 0.5)</li>
+ *     <li>kv.steam.circuit-breaker.open-duration-ms -> time calls are rejected before a probe is let through (default 60000)</li>
+ *     <li>kv.steam.hedge.delay-ms -> hedge requests unanswered after this delay, 0 disables hedging (default 0)</li>
+ * </ul>
+ */
+@Component
+@Log4j2
+public class SteamWebApiClient {
+
+    private static final Executor REST_TEMPLATE_EXECUTOR = task -> Thread.ofVirtual().name("steam-web-api").start(task);
+    //reads block until the body arrives, never on the HttpClient's own threads
+    private static final Executor BODY_EXECUTOR = task -> Thread.ofVirtual().name("steam-web-api-body").start(task);
+    private static final String GZIP = "gzip";
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired(required = false)
+    @Qualifier("steamHttpClient")
+    private HttpClient steamHttpClient;
+
+    @Autowired(required = false)
+    private SteamApiMetricsRecorder metricsRecorder = SteamApiMetricsRecorder.NO_OP;
+
+    @Autowired(required = false)
+    private SteamApiRateLimiter rateLimiter;
+
+    @Autowired(required = false)
+    private SteamApiKeyPool apiKeyPool;
+
+    @Value("${kv.steam.http.read-timeout-ms:15000}")
+    private long readTimeoutMs;
+
+    @Value("${kv.steam.http.gzip:true}")
+    private boolean gzipEnabled;
+
+    @Value("${kv.steam.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${kv.steam.circuit-breaker.enabled:true}")
+    private boolean circuitBreakerEnabled;
+
+    @Value("${kv.steam.circuit-breaker.window-size:20}")
+    private int circuitBreakerWindowSize;
+
+    @Value("${kv.steam.circuit-breaker.minimum-calls:5}")
+    private int circuitBreakerMinimumCalls;
+
+    @Value("${kv.steam.circuit-breaker.failure-rate-threshold:0.5}")
+    private double circuitBreakerFailureRateThreshold;
+
+    @Value("${kv.steam.circuit-breaker.open-duration-ms:60000}")
+    private long circuitBreakerOpenDurationMs;
+
+    @Value("${kv.steam.hedge.delay-ms:0}")
+    private long hedgeDelayMs;
+
+    //empty when disabled
+    private final Map<SteamEndpoint, CircuitBreaker> circuitBreakers = new EnumMap<>(SteamEndpoint.class);
+
+    //fixed limit (min = max), bounds the requests in flight on steamHttpClient; null on the RestTemplate transport
+    private AimdConcurrencyLimiter connectionSlots;
+
+    private final LongAdder hedgedRequests = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (steamHttpClient != null) {
+            int connectionLimit = Math.max(1, maxConnections);
+            connectionSlots = new AimdConcurrencyLimiter(connectionLimit, connectionLimit, connectionLimit, 0.5, 0);
+        }
+        if (circuitBreakerEnabled) {
+            for (SteamEndpoint endpoint : SteamEndpoint.values())
+                circuitBreakers.put(endpoint, new CircuitBreaker(endpoint.getTagValue(), circuitBreakerWindowSize, circuitBreakerMinimumCalls,
+                        circuitBreakerFailureRateThreshold, TimeUnit.MILLISECONDS.toNanos(circuitBreakerOpenDurationMs)));
+        }
+    }
+
+    /**
+     * @return future of the extracted response, failed with the RestTemplate's exceptions on errors.
+     */
+    public <T> CompletableFuture<T> get(String url, SteamWebApiResultExtractor<T> resultExtractor) {
+        return get(url, resultExtractor, Deadline.NONE);
+    }
+
+    /**
+     * Same as {@link #get(String, SteamWebApiResultExtractor)}, bounded by what is left of the given deadline.
+     */
+    public <T> CompletableFuture<T> get(String url, SteamWebApiResultExtractor<T> resultExtractor, Deadline deadline) {
+        //never throws, every failure is reported through the future
+        try {
+            SteamEndpoint endpoint = SteamEndpoint.fromPath(url);
+            Supplier<CompletableFuture<T>> attempt = () -> attempt(url, endpoint, resultExtractor, deadline);
+            return hedgeDelayMs > 0 ? hedged(attempt, endpoint, deadline) : attempt.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public boolean isNonBlocking() {
+        return steamHttpClient != null;
+    }
+
+    /**
+     * @return false while requests to the endpoint are failed fast by its open circuit breaker.
+     */
+    public boolean isCallPermitted(SteamEndpoint endpoint) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        return circuitBreaker == null || circuitBreaker.isCallPermitted();
+    }
+
+    /**
+     * @return state of the endpoint's circuit breaker, CLOSED when circuit breakers are disabled.
+     */
+    public CircuitBreaker.State getCircuitState(SteamEndpoint endpoint) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        return circuitBreaker == null ? CircuitBreaker.State.CLOSED : circuitBreaker.getState();
+    }
+
+    public long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+
+    /**
+     * @return hedged requests whose hedge answered first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    private <T> CompletableFuture<T> attempt(String url, SteamEndpoint endpoint, SteamWebApiResultExtractor<T> resultExtractor, Deadline deadline) {
+        if (deadline.isExpired())
+            return CompletableFuture.failedFuture(new SteamApiDeadlineExceededException("Deadline exceeded before sending " + endpoint.getTagValue() + " request"));
+
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        CircuitBreaker.Permit circuitPermit = circuitBreaker == null ? null : circuitBreaker.tryAcquire();
+        if (circuitBreaker != null && circuitPermit == null)
+            return CompletableFuture.failedFuture(new SteamApiCircuitOpenException("Circuit breaker of " + endpoint.getTagValue() + " is open"));
+
+        CompletableFuture<T> response = steamHttpClient == null
+                ? CompletableFuture.supplyAsync(() -> restTemplate.execute(url, HttpMethod.GET, null, resultExtractor), REST_TEMPLATE_EXECUTOR)
+                : sendAsync(URI.create(url), endpoint, resultExtractor, deadline);
+        if (deadline.isBounded())
+            response = withDeadline(response, endpoint, deadline);
+        if (circuitPermit != null) {
+            response.whenComplete((result, error) -> {
+                Throwable cause = error == null ? null : unwrap(error);
+                if (cause == null || cause instanceof HttpClientErrorException)
+                    circuitPermit.onSuccess();
+                else if (cause instanceof HttpServerErrorException || cause instanceof ResourceAccessException)
+                    circuitPermit.onFailure();
+                else
+                    circuitPermit.release();
+            });
+        }
+        return response;
+    }
+
+    private static <T> CompletableFuture<T> withDeadline(CompletableFuture<T> response, SteamEndpoint endpoint, Deadline deadline) {
+        return response.orTimeout(Math.max(1, deadline.remainingNanos()), TimeUnit.NANOSECONDS).handle((result, error) -> {
+            if (error == null)
+                return result;
+            Throwable cause = unwrap(error);
+            if (cause instanceof TimeoutException)
+                throw new SteamApiDeadlineExceededException("Deadline exceeded while waiting for " + endpoint.getTagValue() + " response");
+            throw error instanceof CompletionException completionException ? completionException : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Sends the request, and once more if unanswered after the hedge delay; completes with the first success or, when
+     * every sent request failed, the last failure.
+     */
+    private <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> attempt, SteamEndpoint endpoint, Deadline deadline) {
+        CompletableFuture<T> primary = attempt.get();
+        if (primary.isDone())
+            return primary;
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pendingAttempts = new AtomicInteger(1);
+        completeFirst(primary, result, pendingAttempts, false);
+        CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || deadline.isExpired() || getCircuitState(endpoint) != CircuitBreaker.State.CLOSED)
+                return;
+            //zero pending attempts: the primary failed meanwhile and already completed the result
+            if (pendingAttempts.getAndUpdate(pending -> pending == 0 ? 0 : pending + 1) == 0)
+                return;
+            hedgedRequests.increment();
+            completeFirst(attempt.get(), result, pendingAttempts, true);
+        });
+        return result;
+    }
+
+    private <T> void completeFirst(CompletableFuture<T> attemptResponse, CompletableFuture<T> result, AtomicInteger pendingAttempts, boolean hedge) {
+        attemptResponse.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value) && hedge)
+                    hedgeWins.increment();
+            } else if (pendingAttempts.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private <T> CompletableFuture<T> sendAsync(URI uri, SteamEndpoint endpoint, SteamWebApiResultExtractor<T> resultExtractor, Deadline deadline) {
+        String apiKey = rateLimiter == null && apiKeyPool == null ? null : RestTemplateInterceptor.extractKey(uri);
+        CompletableFuture<SteamApiRateLimiter.Permit> permit = apiKey == null || rateLimiter == null
+                ? CompletableFuture.completedFuture(null)
+                : rateLimiter.acquireAsync(apiKey);
+        return permit.thenCompose(acquiredPermit -> send(uri, endpoint, apiKey, acquiredPermit, resultExtractor, deadline));
+    }
+
+    private <T> CompletableFuture<T> send(URI uri, SteamEndpoint endpoint, String apiKey, SteamApiRateLimiter.Permit permit,
+                                          SteamWebApiResultExtractor<T> resultExtractor, Deadline deadline) {
+        //never zero, HttpRequest only accepts positive timeouts
+        Duration readTimeout = Duration.ofMillis(readTimeoutMs);
+        Duration timeout = deadline.cap(readTimeout).plusNanos(1);
+        //a timeout shortened by the deadline expires with the caller's budget, not because steam is slow
+        boolean timeoutFromDeadline = timeout.compareTo(readTimeout) <= 0;
+        long waitStartNanos = System.nanoTime();
+        return connectionSlots.acquireAsync(timeout.toNanos()).thenCompose(acquired -> {
+            if (!acquired) {
+                if (permit != null)
+                    permit.cancel();
+                throw new SteamApiRateLimitExceededException("No Steam connection slot freed up within " + timeout.toMillis() + " ms, "
+                        + maxConnections + " requests in flight");
+            }
+            CompletableFuture<T> result;
+            try {
+                //the wait for a slot counts against the request's timeout
+                long remainingNanos = timeout.toNanos() - (System.nanoTime() - waitStartNanos);
+                result = send(uri, endpoint, apiKey, permit, Duration.ofNanos(Math.max(1, remainingNanos)), timeoutFromDeadline)
+                        .thenApplyAsync(httpResponse -> extract(uri, httpResponse, resultExtractor), BODY_EXECUTOR);
+            } catch (RuntimeException e) {
+                connectionSlots.cancel();
+                throw e;
+            }
+            //the body stream is read to its end and closed once extracted, so the connection is free again
+            return result.whenComplete((extracted, error) -> connectionSlots.cancel());
+        });
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(URI uri, SteamEndpoint endpoint, String apiKey, SteamApiRateLimiter.Permit permit, Duration timeout,
+                                                              boolean timeoutFromDeadline) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET().timeout(timeout);
+        if (gzipEnabled)
+            request.header(HttpHeaders.ACCEPT_ENCODING, GZIP);
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> response;
+        try {
+            response = steamHttpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (RuntimeException e) {
+            if (permit != null)
+                permit.releaseOnIoError();
+            throw e;
+        }
+        return response.handle((httpResponse, error) -> {
+            long durationNanos = System.nanoTime() - startNanos;
+            if (error != null) {
+                metricsRecorder.record(endpoint, StatusClass.IO_ERROR, durationNanos);
+                if (permit != null)
+                    permit.releaseOnIoError();
+                Throwable cause = unwrap(error);
+                if (cause instanceof HttpTimeoutException && timeoutFromDeadline)
+                    throw new SteamApiDeadlineExceededException("Deadline exceeded while waiting for " + endpoint.getTagValue() + " response");
+                if (cause instanceof IOException ioException)
+                    throw new ResourceAccessException("I/O error on GET request for \"" + RestTemplateInterceptor.redactKey(uri) + "\": " + ioException.getMessage(), ioException);
+                throw new CompletionException(cause);
+            }
+
+            int statusCode = httpResponse.statusCode();
+            metricsRecorder.record(endpoint, StatusClass.of(statusCode), durationNanos);
+            if (permit != null)
+                permit.release(statusCode);
+            if (apiKey != null && apiKeyPool != null)
+                apiKeyPool.onResponse(apiKey, statusCode);
+            if (log.isDebugEnabled())
+                log.debug("SteamWebApiClient-> HttpStatusCode: {}, URI: {} and took {} ms", statusCode, RestTemplateInterceptor.redactKey(uri), durationNanos / 1_000_000);
+            return httpResponse;
+        });
+    }
+
+    /**
+     * Streams the body into the extractor and closes it; 4xx / 5xx bodies are read into the thrown exception.
+     */
+    private static <T> T extract(URI uri, HttpResponse<InputStream> httpResponse, SteamWebApiResultExtractor<T> resultExtractor) {
+        HttpStatusCode statusCode = HttpStatusCode.valueOf(httpResponse.statusCode());
+        HttpHeaders headers = new HttpHeaders();
+        httpResponse.headers().map().forEach(headers::put);
+        try (InputStream rawBody = httpResponse.body()) {
+            InputStream body = decode(rawBody, headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+            if (statusCode.is5xxServerError())
+                throw HttpServerErrorException.create(statusCode, "", headers, body.readAllBytes(), StandardCharsets.UTF_8);
+            if (statusCode.is4xxClientError())
+                throw HttpClientErrorException.create(statusCode, "", headers, body.readAllBytes(), StandardCharsets.UTF_8);
+            T result = resultExtractor.extractData(new StreamingClientHttpResponse(statusCode, headers, body));
+            //the extractor stops after the result object, drain the rest so the connection can be reused
+            rawBody.transferTo(OutputStream.nullOutputStream());
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error occurred while reading response of " + RestTemplateInterceptor.redactKey(uri), e);
+        }
+    }
+
+    private static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        if (!GZIP.equalsIgnoreCase(contentEncoding))
+            return body;
+        //an empty gzip body has no gzip header to read
+        PushbackInputStream peekableBody = new PushbackInputStream(body, 1);
+        int firstByte = peekableBody.read();
+        if (firstByte == -1)
+            return peekableBody;
+        peekableBody.unread(firstByte);
+        return new GZIPInputStream(peekableBody);
+    }
+
+    /**
+     * Response whose body is still being received, handed to the extractors written against the RestTemplate's
+     * ClientHttpResponse. The body is drained and closed by {@link #extract}.
+     */
+    private record StreamingClientHttpResponse(HttpStatusCode statusCode, HttpHeaders headers, InputStream body) implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            //extractors close what they read, the body must stay open to be drained
+            return new FilterInputStream(body) {
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.kv.config;
+
+import com.kv.cache.LocalCache;
+import com.kv.cache.SegmentedLruCache;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * In-memory cache tier for "GetMatchDetails" responses.
+ * <ul>
+ *     Properties:
+ *     <li>kv.cache.match-details.maximum-size -> upper bound of cached matches (default 10000)</li>
+ *     <li>kv.cache.match-details.expire-after-write-seconds -> optional TTL, 0 disables expiry (default 0)</li>
+ *     <li>kv.cache.match-details.concurrency-level -> number of lock stripes (default 16)</li>
+ * </ul>
+ * Host applications can plug in their own tier by declaring a {@code LocalCache<String, MatchDetailsDto>} bean.
+ * Registered as auto-configuration ({@code META-INF/spring/...AutoConfiguration.imports}), not by component scan, so
+ * it is evaluated after the host's own beans.
+ */
+@AutoConfiguration
+@Log4j2
+public class MatchDetailsCacheConfig {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LocalCache<String, MatchDetailsDto> matchDetailsCache(Environment environment) {
+        long maximumSize = environment.getProperty("kv.cache.match-details.maximum-size", Long.class, DEFAULT_MAXIMUM_SIZE);
+        long expireAfterWriteSeconds = environment.getProperty("kv.cache.match-details.expire-after-write-seconds", Long.class, 0L);
+        int concurrencyLevel = environment.getProperty("kv.cache.match-details.concurrency-level", Integer.class, 16);
+
+        log.info("MatchDetailsCacheConfig::matchDetailsCache maximumSize: {}, expireAfterWriteSeconds: {}, concurrencyLevel: {}",
+                maximumSize, expireAfterWriteSeconds, concurrencyLevel);
+        return new SegmentedLruCache<>(maximumSize, Duration.ofSeconds(expireAfterWriteSeconds), concurrencyLevel);
+    }
+}
@@ -1,29 +1,103 @@
 package com.kv.config;
 
+import com.kv.metrics.StatusClass;
+import com.kv.metrics.SteamApiMetricsRecorder;
+import com.kv.metrics.SteamEndpoint;
+import com.kv.ratelimit.SteamApiKeyPool;
+import com.kv.ratelimit.SteamApiRateLimiter;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.util.StopWatch;
 
 import java.io.IOException;
+import java.net.URI;
 
 @Configuration
 @Log4j2
 public class RestTemplateInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final String KEY_QUERY_PARAM = "key=";
+    private static final String REDACTED_KEY = "key=****";
+
+    @Autowired(required = false)
+    private SteamApiMetricsRecorder metricsRecorder = SteamApiMetricsRecorder.NO_OP;
+
+    @Autowired(required = false)
+    private SteamApiRateLimiter rateLimiter;
+
+    @Autowired(required = false)
+    private SteamApiKeyPool apiKeyPool;
+
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        ClientHttpResponse response = execution.execute(request, body);
-        stopWatch.stop();
-        log.info("RestInterceptor-> HttpStatusCode: {}, URI: {} and took {} seconds", response.getStatusCode(), request.getURI(), stopWatch.getTotalTimeSeconds());
+        SteamEndpoint endpoint = SteamEndpoint.fromPath(request.getURI().getRawPath());
+        //only Steam Web API calls (the ones carrying an api key) are throttled, waiting for a permit is not part of the latency
+        String apiKey = rateLimiter == null && apiKeyPool == null ? null : extractKey(request.getURI());
+        SteamApiRateLimiter.Permit permit = apiKey == null || rateLimiter == null ? null : rateLimiter.acquire(apiKey);
+
+        long startNanos = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            metricsRecorder.record(endpoint, StatusClass.IO_ERROR, System.nanoTime() - startNanos);
+            if (permit != null)
+                permit.releaseOnIoError();
+            throw e;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        int statusCode = response.getStatusCode().value();
+        metricsRecorder.record(endpoint, StatusClass.of(statusCode), durationNanos);
+        if (permit != null)
+            permit.release(statusCode);
+        if (apiKey != null && apiKeyPool != null)
+            apiKeyPool.onResponse(apiKey, statusCode);
 
-//        Integer count = (Integer) PerformanceLogContext.getPerformanceLogContext().get("API_CALL_COUNT");
-//        PerformanceLogContext.setPerformanceLogContext("API_CALL_COUNT", ++count);
+        //URI formatting (and key redaction) only happens when debug logging is on
+        if (log.isDebugEnabled())
+            log.debug("RestInterceptor-> HttpStatusCode: {}, URI: {} and took {} ms", statusCode, redactKey(request.getURI()), durationNanos / 1_000_000);
 
         return response;
     }
+
+    /**
+     * Masks the steam web api key query param value using plain index scans (no regex).
+     */
+    public static String redactKey(URI uri) {
+        String uriString = uri.toString();
+        int keyStart = indexOfKeyParam(uriString);
+        if (keyStart < 0)
+            return uriString;
+
+        int keyEnd = uriString.indexOf('&', keyStart);
+        return uriString.substring(0, keyStart) + REDACTED_KEY + (keyEnd < 0 ? "" : uriString.substring(keyEnd));
+    }
+
+    /**
+     * @return value of the steam web api key query param, or null if the request carries none.
+     */
+    public static String extractKey(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null)
+            return null;
+        int keyStart = indexOfKeyParam(query);
+        if (keyStart < 0)
+            return null;
+
+        int valueStart = keyStart + KEY_QUERY_PARAM.length();
+        int valueEnd = query.indexOf('&', valueStart);
+        String key = valueEnd < 0 ? query.substring(valueStart) : query.substring(valueStart, valueEnd);
+        return key.isEmpty() ? null : key;
+    }
+
+    private static int indexOfKeyParam(String uriString) {
+        int keyStart = uriString.indexOf(KEY_QUERY_PARAM);
+        while (keyStart > 0 && uriString.charAt(keyStart - 1) != '?' && uriString.charAt(keyStart - 1) != '&')
+            keyStart = uriString.indexOf(KEY_QUERY_PARAM, keyStart + 1);
+        return keyStart;
+    }
 }
@@ -0,0 +1,42 @@
+package com.kv.config;
+
+import com.kv.metrics.HistogramSteamApiMetricsRecorder;
+import com.kv.metrics.MicrometerSteamApiMetricsRecorder;
+import com.kv.metrics.SteamApiMetricsRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics sink used by {@link RestTemplateInterceptor}.
+ * Publishes to Micrometer when the host application has a MeterRegistry, otherwise keeps in-process
+ * {@link com.kv.metrics.LatencyHistogram}s readable via {@link HistogramSteamApiMetricsRecorder#snapshot()}.
+ * Host applications can plug in their own sink by declaring a {@link SteamApiMetricsRecorder} bean.
+ * Registered as auto-configuration ({@code META-INF/spring/...AutoConfiguration.imports}), not by component scan, so
+ * it is evaluated after the host's own beans.
+ */
+@AutoConfiguration
+public class SteamApiMetricsConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SteamApiMetricsRecorder steamApiMetricsRecorder() {
+        return new HistogramSteamApiMetricsRecorder();
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MicrometerMetricsConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public SteamApiMetricsRecorder steamApiMetricsRecorder(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+            MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+            return meterRegistry != null ? new MicrometerSteamApiMetricsRecorder(meterRegistry) : new HistogramSteamApiMetricsRecorder();
+        }
+    }
+}
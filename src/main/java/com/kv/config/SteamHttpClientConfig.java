@@ -0,0 +1,59 @@
+package com.kv.config;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * <p>
+ *     Opt-in dedicated HTTP client for the Steam Web API calls: a JDK {@link HttpClient} (HTTP/2 where the server
+ *     supports it, HTTP/1.1 keep-alive otherwise) used by {@link com.kv.client.SteamWebApiClient} only. The host
+ *     application's RestTemplate(s) are left untouched.
+ * </p>
+ * <p>
+ *     Requests in flight on it are bounded by {@code kv.steam.http.max-connections}, enforced by
+ *     {@link com.kv.client.SteamWebApiClient} around each send. The JDK client keeps one multiplexed connection per
+ *     host over HTTP/2; over HTTP/1.1 it opens at most one connection per request in flight. Its idle pool size and
+ *     keep-alive stay the JVM's (jdk.httpclient.connectionPoolSize, jdk.httpclient.keepalive.timeout), they are JVM
+ *     wide system properties and not set by this library.
+ * </p>
+ * <p>
+ *     Host applications can supply their own client as a bean named {@code steamHttpClient}. Registered as
+ *     auto-configuration ({@code META-INF/spring/...AutoConfiguration.imports}), not by component scan, so it is
+ *     evaluated after the host's own beans.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.steam.http.enabled -> true sends the Steam calls through this client (default false)</li>
+ *     <li>kv.steam.http.connect-timeout-ms -> connect timeout (default 5000)</li>
+ *     <li>kv.steam.http.read-timeout-ms -> response timeout (default 15000)</li>
+ *     <li>kv.steam.http.http2 -> false forces HTTP/1.1 (default true)</li>
+ *     <li>kv.steam.http.max-connections -> max Steam requests in flight (default 64)</li>
+ *     <li>kv.steam.http.gzip -> request and decode gzip responses (default true)</li>
+ * </ul>
+ */
+@AutoConfiguration
+@Log4j2
+@ConditionalOnProperty(name = "kv.steam.http.enabled", havingValue = "true")
+public class SteamHttpClientConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(name = "steamHttpClient")
+    public HttpClient steamHttpClient(Environment environment) {
+        long connectTimeoutMs = environment.getProperty("kv.steam.http.connect-timeout-ms", Long.class, 5_000L);
+        boolean http2 = environment.getProperty("kv.steam.http.http2", Boolean.class, true);
+
+        log.info("SteamHttpClientConfig::steamHttpClient connectTimeoutMs: {}, http2: {}", connectTimeoutMs, http2);
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
@@ -0,0 +1,226 @@
+package com.kv.dao;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.cache.LocalCache;
+import com.kv.cache.SegmentedLruCache;
+import com.kv.matchdetails.dto.MatchesDto;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Local per-account copy of GetMatchHistory: every account's matches are kept sorted newest first (by match ID),
+ *     the newest match ID being the sync watermark. Callers only fetch matches newer than the watermark and
+ *     {@link #merge(String, Collection)} them in. An account synced without any match is remembered as such, so its
+ *     next sync is incremental as well.
+ * </p>
+ * <p>
+ *     Persisted as one json file per account under {@code <kv.datasource.url>/dota2/ACCOUNT_HISTORY} when a datasource
+ *     is configured (temp file + atomic move, so a crash never leaves a half written history). The histories of the
+ *     most recently used accounts are held in memory, least recently used ones are evicted and re-read from their
+ *     file when requested again (without a datasource, evicted accounts count as never synced).
+ * </p>
+ * <p>
+ *     Merges of one account are serialized by a striped lock, which also orders their file writes; reads of cached
+ *     histories never wait for a write.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.history.cache.max-accounts -> accounts whose history is held in memory (default 10000)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+public class AccountMatchHistoryStore {
+
+    public static final long NO_WATERMARK = -1;
+    /**
+     * Watermark of an account synced without any match, every match ID is newer.
+     */
+    public static final long EMPTY_HISTORY_WATERMARK = 0;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String ACCOUNT_HISTORY_DIRECTORY_NAME = "ACCOUNT_HISTORY";
+    private static final String HISTORY_FILE_EXTENSION = ".json";
+    private static final Comparator<MatchesDto> NEWEST_FIRST = Comparator.comparingLong(MatchesDto::getMatch_id).reversed();
+
+    private final ObjectMapper objectMapper;
+    private final JavaType historyType;
+    private final Path historyDirectory;
+
+    private final LocalCache<String, AccountHistory> historiesByAccountId;
+    private final ReentrantLock[] mergeLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public AccountMatchHistoryStore(@Autowired Environment environment, @Autowired ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.historyType = objectMapper.getTypeFactory().constructCollectionType(List.class, MatchesDto.class);
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        this.historyDirectory = dbBaseUrl != null ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, ACCOUNT_HISTORY_DIRECTORY_NAME) : null;
+        this.historiesByAccountId = new SegmentedLruCache<>(environment.getProperty("kv.history.cache.max-accounts", Long.class, 10_000L));
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            mergeLocks[i] = new ReentrantLock();
+    }
+
+    /**
+     * @return stored matches of given account, newest first (immutable, empty if never synced).
+     */
+    public List<MatchesDto> getMatches(String dota2AccountId) {
+        return history(dota2AccountId).matches();
+    }
+
+    /**
+     * @return match ID of the newest stored match, {@link #EMPTY_HISTORY_WATERMARK} if the account was synced without
+     * any match, or {@link #NO_WATERMARK} if it was never synced.
+     */
+    public long getNewestMatchId(String dota2AccountId) {
+        AccountHistory history = history(dota2AccountId);
+        if (!history.synced())
+            return NO_WATERMARK;
+        return history.matches().isEmpty() ? EMPTY_HISTORY_WATERMARK : history.matches().get(0).getMatch_id();
+    }
+
+    /**
+     * Merges given matches (any order) into the stored history, keeping it sorted newest first, and marks the account
+     * as synced. A match already stored is replaced by the given one.
+     *
+     * @return the merged history
+     */
+    public List<MatchesDto> merge(String dota2AccountId, Collection<MatchesDto> matches) {
+        List<MatchesDto> incomingMatches = new ArrayList<>(matches);
+        incomingMatches.sort(NEWEST_FIRST);
+        ReentrantLock mergeLock = mergeLock(dota2AccountId);
+        mergeLock.lock();
+        try {
+            AccountHistory storedHistory = loadHistory(dota2AccountId);
+            if (incomingMatches.isEmpty() && storedHistory.synced())
+                return storedHistory.matches();
+
+            AccountHistory mergedHistory = new AccountHistory(mergeNewestFirst(storedHistory.matches(), incomingMatches), true);
+            historiesByAccountId.put(dota2AccountId, mergedHistory);
+            //after the in-memory update, readers get the merged history while it is written
+            writeHistory(dota2AccountId, mergedHistory.matches());
+            return mergedHistory.matches();
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    private AccountHistory history(String dota2AccountId) {
+        AccountHistory history = historiesByAccountId.get(dota2AccountId);
+        if (history != null)
+            return history;
+        ReentrantLock mergeLock = mergeLock(dota2AccountId);
+        mergeLock.lock();
+        try {
+            return loadHistory(dota2AccountId);
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the account's merge lock held, so a file read never overwrites a newer merge in memory.
+     */
+    private AccountHistory loadHistory(String dota2AccountId) {
+        AccountHistory history = historiesByAccountId.get(dota2AccountId);
+        if (history == null) {
+            history = readHistory(dota2AccountId);
+            historiesByAccountId.put(dota2AccountId, history);
+        }
+        return history;
+    }
+
+    private ReentrantLock mergeLock(String dota2AccountId) {
+        return mergeLocks[Math.floorMod(dota2AccountId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static List<MatchesDto> mergeNewestFirst(List<MatchesDto> storedMatches, List<MatchesDto> incomingMatches) {
+        List<MatchesDto> mergedMatches = new ArrayList<>(storedMatches.size() + incomingMatches.size());
+        int stored = 0;
+        int incoming = 0;
+        while (stored < storedMatches.size() || incoming < incomingMatches.size()) {
+            if (incoming == incomingMatches.size()) {
+                mergedMatches.add(storedMatches.get(stored++));
+                continue;
+            }
+            if (stored == storedMatches.size()) {
+                addIfNotLast(mergedMatches, incomingMatches.get(incoming++));
+                continue;
+            }
+
+            long storedMatchId = storedMatches.get(stored).getMatch_id();
+            long incomingMatchId = incomingMatches.get(incoming).getMatch_id();
+            if (incomingMatchId >= storedMatchId) {
+                if (incomingMatchId == storedMatchId)
+                    stored++;
+                addIfNotLast(mergedMatches, incomingMatches.get(incoming++));
+            } else {
+                mergedMatches.add(storedMatches.get(stored++));
+            }
+        }
+        return List.copyOf(mergedMatches);
+    }
+
+    //incoming batches may contain the same match twice (ex: overlapping pages)
+    private static void addIfNotLast(List<MatchesDto> mergedMatches, MatchesDto match) {
+        if (mergedMatches.isEmpty() || mergedMatches.get(mergedMatches.size() - 1).getMatch_id() != match.getMatch_id())
+            mergedMatches.add(match);
+    }
+
+    /**
+     * @return the account's history file, an existing file (even an empty list) meaning the account was synced.
+     */
+    private AccountHistory readHistory(String dota2AccountId) {
+        Path historyFile = historyFile(dota2AccountId);
+        if (historyFile == null || !Files.exists(historyFile))
+            return AccountHistory.NEVER_SYNCED;
+        try {
+            List<MatchesDto> matches = new ArrayList<>(objectMapper.<List<MatchesDto>>readValue(historyFile.toFile(), historyType));
+            matches.sort(NEWEST_FIRST);
+            return new AccountHistory(List.copyOf(matches), true);
+        } catch (IOException e) {
+            log.error("Error occurred while reading match history of account: {}, {}", dota2AccountId, e.getMessage());
+            return AccountHistory.NEVER_SYNCED;
+        }
+    }
+
+    private void writeHistory(String dota2AccountId, List<MatchesDto> matches) {
+        Path historyFile = historyFile(dota2AccountId);
+        if (historyFile == null)
+            return;
+        try {
+            Files.createDirectories(historyDirectory);
+            Path tempFile = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+            objectMapper.writeValue(tempFile.toFile(), matches);
+            Files.move(tempFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error occurred while writing match history of account: {}, {}", dota2AccountId, e.getMessage());
+        }
+    }
+
+    private Path historyFile(String dota2AccountId) {
+        //account IDs are numeric, anything else must not turn into a path
+        if (historyDirectory == null || dota2AccountId.isEmpty() || !dota2AccountId.chars().allMatch(Character::isDigit))
+            return null;
+        return historyDirectory.resolve(dota2AccountId + HISTORY_FILE_EXTENSION);
+    }
+
+    private record AccountHistory(List<MatchesDto> matches, boolean synced) {
+        private static final AccountHistory NEVER_SYNCED = new AccountHistory(List.of(), false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.kv.dao;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of {@link MatchDetailsDao#findByMatchIds(java.util.Collection)}: entries found in local storage keyed by match ID,
+ * plus the match IDs which have to be fetched from elsewhere.
+ */
+public record BulkLookupResult<T>(Map<Long, T> found, Set<Long> missing) {
+}
@@ -0,0 +1,96 @@
+package com.kv.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ *     Serialization format of persisted {@link MatchDetailsDto} records, selected via {@code kv.datasource.codec}:
+ * </p>
+ * <ul>
+ *     <li>json (default) -> plain Jackson json, same as the legacy {@code <matchId>.txt} files.</li>
+ *     <li>smile -> {@value #MAGIC} header + format version byte followed by a Smile (binary json) document. Field names and
+ *     repeated string values are back-referenced and numbers are stored as binary varints, which shrinks match records
+ *     dominated by repeated player stat names and skips text number parsing on read.</li>
+ * </ul>
+ * Decoding looks at the leading bytes, so records written by either codec (and legacy json files) are always readable.
+ */
+@Component
+@Log4j2
+public class MatchDetailsCodec {
+
+    private static final String MAGIC = "KVMD";
+    private static final byte[] MAGIC_BYTES = MAGIC.getBytes(StandardCharsets.US_ASCII);
+    private static final byte FORMAT_VERSION_SMILE_V1 = 1;
+    private static final int HEADER_BYTES = MAGIC_BYTES.length + 1;
+
+    private static final String JSON_FILE_EXTENSION = ".txt";
+    private static final String BINARY_FILE_EXTENSION = ".bin";
+    static final String STORED_FILE_GLOB = "*.{bin,txt}";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final boolean binaryEnabled;
+
+    MatchDetailsCodec(@Autowired ObjectMapper objectMapper, @Autowired Environment environment) {
+        this.objectMapper = objectMapper;
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.smileMapper = objectMapper.copyWith(smileFactory);
+        this.binaryEnabled = "smile".equalsIgnoreCase(environment.getProperty("kv.datasource.codec", "json"));
+        log.info("MatchDetailsCodec::init codec: {}", binaryEnabled ? "smile" : "json");
+    }
+
+    public byte[] encode(MatchDetailsDto matchDetailsDto) throws IOException {
+        if (!binaryEnabled)
+            return objectMapper.writeValueAsBytes(matchDetailsDto);
+
+        byte[] smilePayload = smileMapper.writeValueAsBytes(matchDetailsDto);
+        byte[] record = new byte[HEADER_BYTES + smilePayload.length];
+        System.arraycopy(MAGIC_BYTES, 0, record, 0, MAGIC_BYTES.length);
+        record[MAGIC_BYTES.length] = FORMAT_VERSION_SMILE_V1;
+        System.arraycopy(smilePayload, 0, record, HEADER_BYTES, smilePayload.length);
+        return record;
+    }
+
+    public MatchDetailsDto decode(byte[] record) throws IOException {
+        if (!hasMagic(record))
+            return objectMapper.readValue(record, MatchDetailsDto.class);
+
+        byte formatVersion = record[MAGIC_BYTES.length];
+        if (formatVersion != FORMAT_VERSION_SMILE_V1)
+            throw new IOException("Unsupported match details format version: " + formatVersion);
+        return smileMapper.readValue(record, HEADER_BYTES, record.length - HEADER_BYTES, MatchDetailsDto.class);
+    }
+
+    /**
+     * @return file extension for newly written records, legacy json files keep using ".txt".
+     */
+    public String fileExtension() {
+        return binaryEnabled ? BINARY_FILE_EXTENSION : JSON_FILE_EXTENSION;
+    }
+
+    public static String[] knownFileExtensions() {
+        return new String[]{BINARY_FILE_EXTENSION, JSON_FILE_EXTENSION};
+    }
+
+    private static boolean hasMagic(byte[] record) {
+        if (record.length < HEADER_BYTES)
+            return false;
+        for (int i = 0; i < MAGIC_BYTES.length; i++) {
+            if (record[i] != MAGIC_BYTES[i])
+                return false;
+        }
+        return true;
+    }
+}
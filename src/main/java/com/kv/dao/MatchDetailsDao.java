@@ -3,11 +3,75 @@ package com.kv.dao;
 import com.kv.matchdetails.dto.MatchDetailsDto;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
 
 public interface MatchDetailsDao<T> {
-    Collection<T> findByMatchIds(Collection<T> matchIds);
+    /**
+     * Bulk lookup by match ID. Implementations resolve existence for all IDs in one pass and deserialize hits in parallel.
+     */
+    BulkLookupResult<T> findByMatchIds(Collection<Long> matchIds);
 
     T findByMatchId(Object matchId);
 
+    /**
+     * @throws MatchDetailsSaveException if the match could not be written.
+     */
     T save(T matchDetailsDto);
+
+    /**
+     * Bulk save, implementations may override it to amortize locking / flushing over the whole batch. A match that
+     * fails to be written does not stop the others.
+     *
+     * @throws MatchDetailsSaveException naming the matches that were not written.
+     */
+    default void saveAll(Collection<T> matchDetailsDtos) {
+        Set<Long> failedMatchIds = new LinkedHashSet<>();
+        MatchDetailsSaveException failure = null;
+        for (T matchDetailsDto : matchDetailsDtos) {
+            try {
+                save(matchDetailsDto);
+            } catch (MatchDetailsSaveException e) {
+                failedMatchIds.addAll(e.getFailedMatchIds());
+                failure = e;
+            }
+        }
+        if (failure != null)
+            throw new MatchDetailsSaveException(failedMatchIds, failure.getCause());
+    }
+
+    /**
+     * Same as {@link #saveAll}, but returns only once the matches are written to the storage, for callers that persist
+     * progress based on it (ex: an ingestion checkpoint). Implementations that queue writes must override it.
+     *
+     * @throws MatchDetailsSaveException naming the matches that were not written.
+     */
+    default void saveAllSynchronously(Collection<T> matchDetailsDtos) {
+        saveAll(matchDetailsDtos);
+    }
+
+    /**
+     * Stored matches selected by an account / hero / start time query, newest first. Backed by {@link MatchSecondaryIndex}.
+     *
+     * @throws UnsupportedOperationException if the implementation has no secondary index.
+     */
+    default List<T> findMatches(MatchQuery query) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support match queries");
+    }
+
+    /**
+     * Visits the ID of every stored match, in no particular order.
+     *
+     * @throws UnsupportedOperationException if the implementation can't enumerate its matches.
+     */
+    default void forEachStoredMatchId(LongConsumer matchIdConsumer) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support enumerating stored matches");
+    }
+
+    /**
+     * @return true if a storage location is configured via {@code kv.datasource.url}.
+     */
+    boolean isDataSourceEnabled();
 }
@@ -1,26 +1,43 @@
 package com.kv.dao;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kv.matchdetails.dto.MatchDetailsDto;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 @Service
 @Log4j2
+@ConditionalOnProperty(name = "kv.datasource.type", havingValue = "file", matchIfMissing = true)
 public class MatchDetailsDaoFileStorageImpl implements MatchDetailsDao<MatchDetailsDto> {
 
     private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "\\dota2\\MATCH_DETAILS";
     private static final String DOTA2_DB_SUB_DIRECTORY_NAME_FOR_LINUX = "/dota2/MATCH_DETAILS";
 
+    private static final int DIRECTORY_SCAN_THRESHOLD = 64;
+
     private static final String HOST_OS = getHostOS();
 
     //    @Value(value = "${kv.datasource.url}")
@@ -31,27 +48,151 @@ public class MatchDetailsDaoFileStorageImpl implements MatchDetailsDao<MatchDeta
     public boolean dataSourceEnabled;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private MatchDetailsCodec matchDetailsCodec;
+
+    @Autowired(required = false)
+    private List<MatchDetailsSaveListener> saveListeners = List.of();
+
+    //account / hero / start time indexes, null when disabled via kv.datasource.secondary-index.enabled=false
+    @Autowired(required = false)
+    private MatchSecondaryIndex matchSecondaryIndex;
+
+    //Bloom filter + memory-mapped index of stored matchIds, null when disabled via kv.datasource.index.enabled=false
+    private MatchIdIndex matchIdIndex;
+
+    //files read at once by findByMatchIds across all callers, kv.datasource.read-concurrency (default 16)
+    private final Semaphore readPermits;
 
     MatchDetailsDaoFileStorageImpl(@Autowired Environment environment) {
         this.dbBaseUrl = environment.getProperty("kv.datasource.url");
         this.dataSourceEnabled = this.dbBaseUrl != null;
         this.fullyQualifiedDatabaseBasePath = fileStorageBasePathSupplier.get();
+        this.readPermits = new Semaphore(Math.max(1, environment.getProperty("kv.datasource.read-concurrency", Integer.class, 16)));
+
+        if (dataSourceEnabled && environment.getProperty("kv.datasource.index.enabled", Boolean.class, true)) {
+            try {
+                this.matchIdIndex = new MatchIdIndex(Path.of(fullyQualifiedDatabaseBasePath), this::listStoredMatchIds);
+            } catch (IOException e) {
+                log.error("Error occurred while opening match id index, falling back to file lookups, {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (matchIdIndex != null) {
+            try {
+                matchIdIndex.close();
+            } catch (IOException e) {
+                log.error("Error occurred while closing match id index, {}", e.getMessage());
+            }
+        }
     }
 
     @Override
-    public Collection<MatchDetailsDto> findByMatchIds(Collection<MatchDetailsDto> matchIds) {
-        return null;
+    public boolean isDataSourceEnabled() {
+        return dataSourceEnabled;
+    }
+
+    @Override
+    public BulkLookupResult<MatchDetailsDto> findByMatchIds(Collection<Long> matchIds) {
+        Set<Long> existingMatchIds = findExistingMatchIds(matchIds);
+        Set<Long> missingMatchIds = new HashSet<>(matchIds);
+        missingMatchIds.removeAll(existingMatchIds);
+
+        Map<Long, MatchDetailsDto> found = new ConcurrentHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long matchId : existingMatchIds) {
+                executor.submit(() -> {
+                    readPermits.acquireUninterruptibly();
+                    try {
+                        File file = resolveExistingFile(matchId.toString());
+                        if (file != null)
+                            found.put(matchId, matchDetailsCodec.decode(Files.readAllBytes(file.toPath())));
+                    } catch (IOException e) {
+                        log.error("Error occurred while reading File for matchId: {}, {}", matchId, e.getMessage());
+                    } finally {
+                        readPermits.release();
+                    }
+                });
+            }
+        }
+
+        //Unreadable files are reported as missing so callers can re-fetch them
+        existingMatchIds.stream().filter(matchId -> !found.containsKey(matchId)).forEach(missingMatchIds::add);
+        log.info("FileStorageImpl::findByMatchIds requested: {}, found: {}, missing: {}", matchIds.size(), found.size(), missingMatchIds.size());
+        return new BulkLookupResult<>(found, missingMatchIds);
+    }
+
+    /**
+     * Small lookups check each file directly, larger ones list the storage directory once instead of
+     * doing a File.exists syscall per matchId.
+     */
+    private Set<Long> findExistingMatchIds(Collection<Long> matchIds) {
+        Set<Long> existingMatchIds = new HashSet<>();
+        if (matchIdIndex != null) {
+            for (Long matchId : matchIds) {
+                if (matchIdIndex.contains(matchId))
+                    existingMatchIds.add(matchId);
+            }
+            return existingMatchIds;
+        }
+        if (matchIds.size() <= DIRECTORY_SCAN_THRESHOLD) {
+            for (Long matchId : matchIds) {
+                if (resolveExistingFile(matchId.toString()) != null)
+                    existingMatchIds.add(matchId);
+            }
+            return existingMatchIds;
+        }
+
+        Set<Long> requestedMatchIds = new HashSet<>(matchIds);
+        forEachStoredMatchId(matchId -> {
+            if (requestedMatchIds.contains(matchId))
+                existingMatchIds.add(matchId);
+        });
+        return existingMatchIds;
+    }
+
+    private long[] listStoredMatchIds() {
+        LongStream.Builder storedMatchIds = LongStream.builder();
+        forEachStoredMatchId(storedMatchIds::add);
+        return storedMatchIds.build().toArray();
+    }
+
+    /**
+     * Single pass over the storage directory.
+     */
+    @Override
+    public void forEachStoredMatchId(LongConsumer matchIdConsumer) {
+        if (!dataSourceEnabled)
+            return;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(Path.of(fullyQualifiedDatabaseBasePath), MatchDetailsCodec.STORED_FILE_GLOB)) {
+            for (Path path : directoryStream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    matchIdConsumer.accept(Long.parseLong(fileName.substring(0, fileName.lastIndexOf('.'))));
+                } catch (NumberFormatException ignored) {
+                    //not a match details file
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error occurred while listing directory: {}, {}", fullyQualifiedDatabaseBasePath, e.getMessage());
+        }
     }
 
     @Override
     public MatchDetailsDto findByMatchId(Object matchId) {
+        if (isKnownToBeAbsent(matchId)) {
+            log.info("No existing data found for matchId: {}", matchId);
+            return null;
+        }
+
         MatchDetailsDto matchDetailsDto = new MatchDetailsDto();
-        File file = new File(getAbsoluteFilePath(matchId.toString()));
+        File file = resolveExistingFile(matchId.toString());
 
-        if (file.exists()) {
+        if (file != null) {
             try {
-                matchDetailsDto = objectMapper.readValue(file, MatchDetailsDto.class);
+                matchDetailsDto = matchDetailsCodec.decode(Files.readAllBytes(file.toPath()));
             } catch (JsonProcessingException e) {
                 log.error("Error occurred while reading/processing json, {}", e.getMessage());
             } catch (IOException e) {
@@ -64,44 +205,81 @@ public class MatchDetailsDaoFileStorageImpl implements MatchDetailsDao<MatchDeta
         return matchDetailsDto;
     }
 
+    @Override
+    public List<MatchDetailsDto> findMatches(MatchQuery query) {
+        if (matchSecondaryIndex == null)
+            throw new UnsupportedOperationException("Match queries need kv.datasource.secondary-index.enabled=true");
+        return matchSecondaryIndex.findMatches(query, this);
+    }
+
     @Override
     public MatchDetailsDto save(MatchDetailsDto matchDetailsDto) {
         long pk = matchDetailsDto.getMatch_id();
-        File file = new File(getAbsoluteFilePath(String.valueOf(pk)));
         try {
-            if (!file.exists()) {
-                Boolean isNewFileCreated = file.createNewFile();
-                FileWriter fw = new FileWriter(file);
-                String jsonString = convertToJsonString(matchDetailsDto);
-                fw.write(jsonString);
-                fw.flush();
-                fw.close();
-                log.debug("JSON String: {}", jsonString);
+            boolean written = false;
+            if (resolveExistingFile(String.valueOf(pk)) == null) {
+                byte[] record = matchDetailsCodec.encode(matchDetailsDto);
+                Files.write(Path.of(getAbsoluteFilePath(String.valueOf(pk), matchDetailsCodec.fileExtension())), record, StandardOpenOption.CREATE_NEW);
+                log.debug("Saved {} bytes for matchId: {}", record.length, pk);
+                written = true;
             }
+            //indexed before the listeners run, a stored match must never be reported as absent
+            if (matchIdIndex != null)
+                matchIdIndex.add(pk);
+            if (written)
+                notifySaveListeners(matchDetailsDto);
         } catch (IOException ioException) {
             log.error("Error occurred while saving file for filename: {}", pk);
             log.error("Error message {}", ioException.getMessage());
-
+            throw new MatchDetailsSaveException(Set.of(pk), ioException);
         }
         return matchDetailsDto;
     }
 
-    private String getAbsoluteFilePath(String fileName) {
-        if(HOST_OS.contains("Linux")) {
-            return fullyQualifiedDatabaseBasePath + "/" + fileName + ".txt";
-        } else {
-            return fullyQualifiedDatabaseBasePath + "\\" + fileName + ".txt";
+    /**
+     * A failing listener is logged and skipped, the match is stored either way and the remaining listeners still run.
+     */
+    private void notifySaveListeners(MatchDetailsDto matchDetailsDto) {
+        for (MatchDetailsSaveListener listener : saveListeners) {
+            try {
+                listener.onSaved(matchDetailsDto);
+            } catch (RuntimeException e) {
+                log.error("Error occurred in save listener {} for matchId: {}", listener.getClass().getSimpleName(), matchDetailsDto.getMatch_id(), e);
+            }
         }
     }
 
-    private String convertToJsonString(Object object) {
-        String jsonString = null;
+    /**
+     * Negative lookups are answered from the match id index without any filesystem access.
+     */
+    private boolean isKnownToBeAbsent(Object matchId) {
+        if (matchIdIndex == null)
+            return false;
         try {
-            jsonString = objectMapper.writeValueAsString(object);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            return !matchIdIndex.contains(Long.parseLong(matchId.toString()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return stored file for given matchId in any known format (binary first, then legacy json), or null if absent.
+     */
+    private File resolveExistingFile(String fileName) {
+        for (String extension : MatchDetailsCodec.knownFileExtensions()) {
+            File file = new File(getAbsoluteFilePath(fileName, extension));
+            if (file.exists())
+                return file;
+        }
+        return null;
+    }
+
+    private String getAbsoluteFilePath(String fileName, String extension) {
+        if(HOST_OS.contains("Linux")) {
+            return fullyQualifiedDatabaseBasePath + "/" + fileName + extension;
+        } else {
+            return fullyQualifiedDatabaseBasePath + "\\" + fileName + extension;
         }
-        return jsonString;
     }
 
     private static String getHostOS() {
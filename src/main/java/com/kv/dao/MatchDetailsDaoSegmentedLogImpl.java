@@ -0,0 +1,429 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.util.LongLongHashMap;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     Append-only alternative to {@link MatchDetailsDaoFileStorageImpl}. Instead of one file per match, records are
+ *     appended to rolling segment files ({@code segment-000001.log}, ...) under {@code <kv.datasource.url>/dota2/MATCH_DETAILS_LOG}.
+ * </p>
+ * <p>
+ *     Record layout: {@code [int payloadLength][long matchId][int crc32(payload)][payload = MatchDetailsCodec record]}.
+ *     An in-memory matchId -> (segment, offset) index is rebuilt at startup by walking the record headers only,
+ *     a torn record at the tail of the last segment (crash mid-write) is truncated.
+ * </p>
+ * <p>
+ *     Match details never change once a match is over, so a stored match is never rewritten: saving a known matchId is a
+ *     no-op and every record stays live. Segments are therefore never compacted.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.datasource.type=segmented-log -> activates this implementation</li>
+ *     <li>kv.datasource.segmented-log.segment-size-mb -> roll over size of a segment (default 64)</li>
+ *     <li>kv.datasource.read-concurrency -> records read at once by {@code findByMatchIds} across all callers (default 16)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "kv.datasource.type", havingValue = "segmented-log")
+public class MatchDetailsDaoSegmentedLogImpl implements MatchDetailsDao<MatchDetailsDto> {
+
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String MATCH_DETAILS_LOG_DIRECTORY_NAME = "MATCH_DETAILS_LOG";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_EXTENSION = ".log";
+
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int SEGMENT_ID_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << SEGMENT_ID_SHIFT) - 1;
+
+    public boolean dataSourceEnabled;
+
+    @Autowired
+    private MatchDetailsCodec matchDetailsCodec;
+
+    @Autowired(required = false)
+    private List<MatchDetailsSaveListener> saveListeners = List.of();
+
+    //account / hero / start time indexes, null when disabled via kv.datasource.secondary-index.enabled=false
+    @Autowired(required = false)
+    private MatchSecondaryIndex matchSecondaryIndex;
+
+    private final Path segmentDirectory;
+    private final long maxSegmentBytes;
+    private final Semaphore readPermits;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // matchId -> (segmentId << 40 | record offset)
+    private final LongLongHashMap index = new LongLongHashMap(1 << 16);
+    private final Map<Integer, FileChannel> segmentChannels = new ConcurrentHashMap<>();
+    private int activeSegmentId;
+
+    MatchDetailsDaoSegmentedLogImpl(@Autowired Environment environment) {
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        this.dataSourceEnabled = dbBaseUrl != null;
+        this.segmentDirectory = dataSourceEnabled ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, MATCH_DETAILS_LOG_DIRECTORY_NAME) : null;
+        this.maxSegmentBytes = environment.getProperty("kv.datasource.segmented-log.segment-size-mb", Long.class, 64L) * 1024 * 1024;
+        this.readPermits = new Semaphore(Math.max(1, environment.getProperty("kv.datasource.read-concurrency", Integer.class, 16)));
+
+        if (dataSourceEnabled) {
+            openSegments();
+        }
+    }
+
+    @Override
+    public boolean isDataSourceEnabled() {
+        return dataSourceEnabled;
+    }
+
+    @Override
+    public void forEachStoredMatchId(LongConsumer matchIdConsumer) {
+        long[] matchIds;
+        lock.readLock().lock();
+        try {
+            //copied, so the consumer runs without holding the lock
+            LongStream.Builder storedMatchIds = LongStream.builder();
+            index.forEach((matchId, location) -> storedMatchIds.add(matchId));
+            matchIds = storedMatchIds.build().toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (long matchId : matchIds)
+            matchIdConsumer.accept(matchId);
+    }
+
+    @Override
+    public BulkLookupResult<MatchDetailsDto> findByMatchIds(Collection<Long> matchIds) {
+        Map<Long, Long> locations = new HashMap<>();
+        Set<Long> missingMatchIds = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Long matchId : matchIds) {
+                long location = index.get(matchId);
+                if (location == LongLongHashMap.NO_VALUE)
+                    missingMatchIds.add(matchId);
+                else
+                    locations.put(matchId, location);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Long, MatchDetailsDto> found = new ConcurrentHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            locations.forEach((matchId, location) -> executor.submit(() -> {
+                readPermits.acquireUninterruptibly();
+                try {
+                    MatchDetailsDto matchDetailsDto = findByMatchId(matchId);
+                    if (matchDetailsDto != null)
+                        found.put(matchId, matchDetailsDto);
+                } finally {
+                    readPermits.release();
+                }
+            }));
+        }
+
+        locations.keySet().stream().filter(matchId -> !found.containsKey(matchId)).forEach(missingMatchIds::add);
+        return new BulkLookupResult<>(found, missingMatchIds);
+    }
+
+    @Override
+    public MatchDetailsDto findByMatchId(Object matchId) {
+        long pk = Long.parseLong(matchId.toString());
+        lock.readLock().lock();
+        try {
+            long location = index.get(pk);
+            if (location == LongLongHashMap.NO_VALUE) {
+                log.info("No existing data found for matchId: {}", matchId);
+                return null;
+            }
+            byte[] payload = readPayload(location);
+            return payload == null ? null : matchDetailsCodec.decode(payload);
+        } catch (IOException e) {
+            log.error("Error occurred while reading segment for matchId: {}, {}", matchId, e.getMessage());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MatchDetailsDto> findMatches(MatchQuery query) {
+        if (matchSecondaryIndex == null)
+            throw new UnsupportedOperationException("Match queries need kv.datasource.secondary-index.enabled=true");
+        return matchSecondaryIndex.findMatches(query, this);
+    }
+
+    @Override
+    public MatchDetailsDto save(MatchDetailsDto matchDetailsDto) {
+        long pk = matchDetailsDto.getMatch_id();
+        try {
+            byte[] payload = matchDetailsCodec.encode(matchDetailsDto);
+            boolean appended = false;
+            lock.writeLock().lock();
+            try {
+                if (!index.containsKey(pk)) {
+                    index.put(pk, append(pk, payload));
+                    appended = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (appended)
+                notifySaveListeners(matchDetailsDto);
+        } catch (IOException ioException) {
+            log.error("Error occurred while appending record for matchId: {}", pk);
+            log.error("Error message {}", ioException.getMessage());
+            throw new MatchDetailsSaveException(Set.of(pk), ioException);
+        }
+        return matchDetailsDto;
+    }
+
+    /**
+     * Encodes the batch outside of the lock and appends it under a single write lock acquisition. A record that fails to
+     * encode or append does not stop the others.
+     *
+     * @throws MatchDetailsSaveException naming the matches that were not written.
+     */
+    @Override
+    public void saveAll(Collection<MatchDetailsDto> matchDetailsDtos) {
+        Set<Long> failedMatchIds = new LinkedHashSet<>();
+        IOException failure = null;
+        List<MatchDetailsDto> encodedMatches = new ArrayList<>(matchDetailsDtos.size());
+        List<byte[]> payloads = new ArrayList<>(matchDetailsDtos.size());
+        for (MatchDetailsDto matchDetailsDto : matchDetailsDtos) {
+            try {
+                payloads.add(matchDetailsCodec.encode(matchDetailsDto));
+                encodedMatches.add(matchDetailsDto);
+            } catch (IOException ioException) {
+                log.error("Error occurred while encoding record for matchId: {}", matchDetailsDto.getMatch_id());
+                log.error("Error message {}", ioException.getMessage());
+                failedMatchIds.add(matchDetailsDto.getMatch_id());
+                failure = ioException;
+            }
+        }
+
+        List<MatchDetailsDto> appendedMatches = new ArrayList<>(encodedMatches.size());
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < encodedMatches.size(); i++) {
+                long pk = encodedMatches.get(i).getMatch_id();
+                try {
+                    if (!index.containsKey(pk)) {
+                        index.put(pk, append(pk, payloads.get(i)));
+                        appendedMatches.add(encodedMatches.get(i));
+                    }
+                } catch (IOException ioException) {
+                    log.error("Error occurred while appending record for matchId: {}", pk);
+                    log.error("Error message {}", ioException.getMessage());
+                    failedMatchIds.add(pk);
+                    failure = ioException;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        appendedMatches.forEach(this::notifySaveListeners);
+        if (!failedMatchIds.isEmpty())
+            throw new MatchDetailsSaveException(failedMatchIds, failure);
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (FileChannel channel : segmentChannels.values()) {
+                channel.force(false);
+                channel.close();
+            }
+            segmentChannels.clear();
+        } catch (IOException e) {
+            log.error("Error occurred while closing segments, {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A failing listener is logged and skipped, the match is stored either way and the remaining listeners still run.
+     */
+    private void notifySaveListeners(MatchDetailsDto matchDetailsDto) {
+        for (MatchDetailsSaveListener listener : saveListeners) {
+            try {
+                listener.onSaved(matchDetailsDto);
+            } catch (RuntimeException e) {
+                log.error("Error occurred in save listener {} for matchId: {}", listener.getClass().getSimpleName(), matchDetailsDto.getMatch_id(), e);
+            }
+        }
+    }
+
+    /**
+     * Must be called with the write lock held. A failed write is truncated away before the exception is rethrown.
+     * @return location of the appended record.
+     */
+    private long append(long matchId, byte[] payload) throws IOException {
+        FileChannel channel = segmentChannels.get(activeSegmentId);
+        if (channel.size() + RECORD_HEADER_BYTES + payload.length > maxSegmentBytes && channel.size() > 0) {
+            channel.force(false);
+            activeSegmentId++;
+            channel = openSegment(activeSegmentId);
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putLong(matchId).putInt((int) crc32.getValue()).put(payload).flip();
+
+        long offset = channel.size();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            //a partially written record would sit in front of every later append and end the segment on reload
+            try {
+                channel.truncate(offset);
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+            throw e;
+        }
+        return location(activeSegmentId, offset);
+    }
+
+    /**
+     * @return payload at given location, or null if the record fails its checksum.
+     */
+    private byte[] readPayload(long location) throws IOException {
+        FileChannel channel = segmentChannels.get((int) (location >>> SEGMENT_ID_SHIFT));
+        long offset = location & OFFSET_MASK;
+        RecordHeader header = readHeader(channel, offset);
+
+        ByteBuffer payloadBuffer = ByteBuffer.allocate(header.payloadLength());
+        readFully(channel, payloadBuffer, offset + RECORD_HEADER_BYTES);
+        byte[] payload = payloadBuffer.array();
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        if ((int) crc32.getValue() != header.crc32()) {
+            log.error("Checksum mismatch for matchId: {} at offset: {}", header.matchId(), offset);
+            return null;
+        }
+        return payload;
+    }
+
+    private void openSegments() {
+        try {
+            Files.createDirectories(segmentDirectory);
+            TreeMap<Integer, Path> segmentPaths = new TreeMap<>();
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(segmentDirectory, SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_EXTENSION)) {
+                for (Path path : directoryStream) {
+                    String fileName = path.getFileName().toString();
+                    segmentPaths.put(Integer.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_EXTENSION.length())), path);
+                }
+            }
+
+            long startTime = System.currentTimeMillis();
+            for (int segmentId : segmentPaths.keySet()) {
+                loadSegment(segmentId, openSegment(segmentId), segmentId == segmentPaths.lastKey());
+            }
+            activeSegmentId = segmentPaths.isEmpty() ? 1 : segmentPaths.lastKey();
+            if (segmentPaths.isEmpty())
+                openSegment(activeSegmentId);
+            log.info("SegmentedLogImpl::openSegments indexed {} matches from {} segments in {} ms",
+                    index.size(), segmentPaths.size(), System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            log.error("Error occurred while opening segments in {}, disabling data source, {}", segmentDirectory, e.getMessage());
+            dataSourceEnabled = false;
+        }
+    }
+
+    /**
+     * Walks record headers of a segment and indexes them, later records win over earlier ones for the same matchId.
+     */
+    private void loadSegment(int segmentId, FileChannel channel, boolean isLastSegment) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            RecordHeader header = readHeader(channel, offset);
+            long recordBytes = RECORD_HEADER_BYTES + (long) header.payloadLength();
+            if (header.payloadLength() < 0 || offset + recordBytes > size)
+                break;
+
+            index.put(header.matchId(), location(segmentId, offset));
+            offset += recordBytes;
+        }
+
+        if (offset < size) {
+            if (isLastSegment) {
+                log.warn("SegmentedLogImpl::loadSegment truncating torn tail of segment {} at offset {}", segmentId, offset);
+                channel.truncate(offset);
+            } else {
+                log.error("SegmentedLogImpl::loadSegment corrupt record in sealed segment {} at offset {}", segmentId, offset);
+            }
+        }
+    }
+
+    private FileChannel openSegment(int segmentId) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentChannels.put(segmentId, channel);
+        return channel;
+    }
+
+    private Path segmentPath(int segmentId) {
+        return segmentDirectory.resolve(String.format("%s%06d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_EXTENSION));
+    }
+
+    private static RecordHeader readHeader(FileChannel channel, long offset) throws IOException {
+        ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(channel, headerBuffer, offset);
+        headerBuffer.flip();
+        return new RecordHeader(headerBuffer.getInt(), headerBuffer.getLong(), headerBuffer.getInt());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of segment at position " + (position + buffer.position()));
+        }
+    }
+
+    private static long location(int segmentId, long offset) {
+        return ((long) segmentId << SEGMENT_ID_SHIFT) | offset;
+    }
+
+    private record RecordHeader(int payloadLength, long matchId, int crc32) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.kv.dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * A {@link MatchDetailsDao} could not write some of the matches it was asked to save. Matches not listed in
+ * {@link #getFailedMatchIds()} were written (or were already stored).
+ */
+public class MatchDetailsSaveException extends UncheckedIOException {
+
+    private final Set<Long> failedMatchIds;
+
+    public MatchDetailsSaveException(Set<Long> failedMatchIds, IOException cause) {
+        super("Error occurred while writing " + failedMatchIds.size() + " match details: " + failedMatchIds, cause);
+        this.failedMatchIds = Set.copyOf(failedMatchIds);
+    }
+
+    public Set<Long> getFailedMatchIds() {
+        return failedMatchIds;
+    }
+}
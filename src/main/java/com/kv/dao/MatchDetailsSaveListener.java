@@ -0,0 +1,13 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+
+/**
+ * Notified by {@link MatchDetailsDao} implementations after a match was newly written to the store
+ * (not for matches which were already stored). Called on the saving thread, implementations must be quick.
+ * An exception thrown by a listener is logged and does not fail the save, the match is not reported again.
+ */
+public interface MatchDetailsSaveListener {
+
+    void onSaved(MatchDetailsDto matchDetailsDto);
+}
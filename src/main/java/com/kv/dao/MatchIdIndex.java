@@ -0,0 +1,376 @@
+package com.kv.dao;
+
+import com.kv.util.BloomFilter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     Persistent index of the match IDs held by a storage directory, so that lookups for matches which were never
+ *     stored are answered without touching the filesystem.
+ * </p>
+ * <ul>
+ *     <li>A Bloom filter in front rejects most unknown match IDs in a few hundred nanoseconds.</li>
+ *     <li>A sorted, memory-mapped {@code match-id-<generation>.idx} file answers the rest with a binary search.</li>
+ *     <li>IDs saved since the last generation are kept in memory and appended to {@code match-id.journal};
+ *     every {@value #MERGE_THRESHOLD} of them are merged into a new generation written to a temp file and atomically renamed.</li>
+ * </ul>
+ * A missing or corrupt generation file is rebuilt from the IDs supplied by the owning DAO (ex: directory listing).
+ */
+@Log4j2
+public class MatchIdIndex implements Closeable {
+
+    private static final int MAGIC = 0x4D494458; // "MIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int MERGE_THRESHOLD = 4096;
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+    private static final long MIN_BLOOM_FILTER_INSERTIONS = 1 << 20;
+
+    private static final String INDEX_FILE_PREFIX = "match-id-";
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+    private static final String JOURNAL_FILE_NAME = "match-id.journal";
+
+    private final Path directory;
+    private final Supplier<long[]> storedMatchIdsSupplier;
+
+    private volatile Generation generation;
+    private volatile BloomFilter bloomFilter;
+    private final Set<Long> pendingMatchIds = ConcurrentHashMap.newKeySet();
+
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    /**
+     * @param directory              directory holding the index and journal files.
+     * @param storedMatchIdsSupplier source of truth used to rebuild the index when it is missing or corrupt.
+     */
+    public MatchIdIndex(Path directory, Supplier<long[]> storedMatchIdsSupplier) throws IOException {
+        this.directory = directory;
+        this.storedMatchIdsSupplier = storedMatchIdsSupplier;
+        open();
+    }
+
+    /**
+     * @return false if the match ID is definitely not stored.
+     */
+    public boolean contains(long matchId) {
+        if (!bloomFilter.mightContain(matchId))
+            return false;
+        if (pendingMatchIds.contains(matchId))
+            return true;
+        return generation.contains(matchId);
+    }
+
+    public void add(long matchId) {
+        if (contains(matchId))
+            return;
+
+        synchronized (journalLock) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, matchId);
+                journal.write(buffer, journal.size());
+            } catch (IOException e) {
+                log.error("Error occurred while appending matchId: {} to index journal, {}", matchId, e.getMessage());
+            }
+            pendingMatchIds.add(matchId);
+            //under the journal lock, so merge() can't publish a resized filter missing this match ID
+            bloomFilter.put(matchId);
+        }
+
+        if (pendingMatchIds.size() >= MERGE_THRESHOLD && mergeLock.tryLock()) {
+            try {
+                merge();
+            } catch (IOException e) {
+                log.error("Error occurred while merging match id index, {}", e.getMessage());
+            } finally {
+                mergeLock.unlock();
+            }
+        }
+    }
+
+    public long size() {
+        return generation.count() + pendingMatchIds.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mergeLock.lock();
+        try {
+            if (!pendingMatchIds.isEmpty())
+                merge();
+        } finally {
+            mergeLock.unlock();
+        }
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        long startTime = System.currentTimeMillis();
+
+        int latestGeneration = findLatestGenerationNumber();
+        Generation loadedGeneration = latestGeneration > 0 ? loadGeneration(latestGeneration) : null;
+        boolean rebuilt = loadedGeneration == null;
+        if (rebuilt) {
+            long[] storedMatchIds = storedMatchIdsSupplier.get();
+            Arrays.sort(storedMatchIds);
+            loadedGeneration = writeGeneration(distinct(storedMatchIds), latestGeneration + 1);
+        }
+        this.generation = loadedGeneration;
+        this.bloomFilter = newBloomFilter(loadedGeneration);
+        deleteStaleGenerations(loadedGeneration.number());
+
+        Path journalPath = directory.resolve(JOURNAL_FILE_NAME);
+        if (rebuilt) {
+            //Rebuild already covers everything stored, journal entries are redundant
+            Files.deleteIfExists(journalPath);
+        }
+        this.journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayJournal();
+
+        log.info("MatchIdIndex::open {} match ids (generation: {}, rebuilt: {}, journal: {}) in {} ms",
+                size(), loadedGeneration.number(), rebuilt, pendingMatchIds.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void replayJournal() throws IOException {
+        long validBytes = journal.size() - journal.size() % Long.BYTES;
+        if (validBytes != journal.size()) {
+            log.warn("MatchIdIndex::replayJournal truncating torn journal entry");
+            journal.truncate(validBytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) validBytes);
+        while (buffer.hasRemaining() && journal.read(buffer, buffer.position()) >= 0) {
+            // keep reading until the journal is fully loaded
+        }
+        buffer.flip();
+        while (buffer.remaining() >= Long.BYTES) {
+            long matchId = buffer.getLong();
+            if (!generation.contains(matchId)) {
+                pendingMatchIds.add(matchId);
+                bloomFilter.put(matchId);
+            }
+        }
+    }
+
+    /**
+     * Must be called with the merge lock held.
+     */
+    private void merge() throws IOException {
+        Generation current = generation;
+        long[] pending = pendingMatchIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        Generation next = writeGeneration(mergeSorted(current, pending), current.number() + 1);
+
+        this.generation = next;
+        BloomFilter resizedBloomFilter = next.count() > bloomFilter.expectedInsertions() ? newBloomFilter(next) : null;
+
+        synchronized (journalLock) {
+            //filled and published under the lock add() holds, a match ID added concurrently lands in either filter
+            if (resizedBloomFilter != null) {
+                pendingMatchIds.forEach(resizedBloomFilter::put);
+                this.bloomFilter = resizedBloomFilter;
+            }
+            for (long matchId : pending)
+                pendingMatchIds.remove(matchId);
+
+            //Rewrite journal with whatever was saved while the new generation was being written
+            Path journalPath = directory.resolve(JOURNAL_FILE_NAME);
+            Path tempJournalPath = directory.resolve(JOURNAL_FILE_NAME + ".tmp");
+            ByteBuffer buffer = ByteBuffer.allocate(pendingMatchIds.size() * Long.BYTES);
+            pendingMatchIds.forEach(buffer::putLong);
+            buffer.flip();
+            try (FileChannel tempJournal = FileChannel.open(tempJournalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining())
+                    tempJournal.write(buffer);
+                tempJournal.force(false);
+            }
+            journal.close();
+            Files.move(tempJournalPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        deleteStaleGenerations(next.number());
+        log.info("MatchIdIndex::merge generation {} written with {} match ids", next.number(), next.count());
+    }
+
+    private Generation writeGeneration(long[] sortedMatchIds, int number) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(sortedMatchIds.length * Long.BYTES);
+        data.asLongBuffer().put(sortedMatchIds);
+        CRC32 crc32 = new CRC32();
+        crc32.update(data.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(sortedMatchIds.length).putLong(crc32.getValue()).flip();
+
+        Path path = generationPath(number);
+        Path tempPath = directory.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining())
+                channel.write(header);
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(false);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Generation written = loadGeneration(number);
+        if (written == null)
+            throw new IOException("Index generation " + number + " failed validation right after being written");
+        return written;
+    }
+
+    /**
+     * @return mapped generation, or null if the file is missing or fails validation.
+     */
+    private Generation loadGeneration(int number) {
+        Path path = generationPath(number);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES)
+                return invalidGeneration(number, "truncated header");
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int magic = mapped.getInt(0);
+            int version = mapped.getInt(Integer.BYTES);
+            long count = mapped.getLong(Integer.BYTES * 2);
+            long checksum = mapped.getLong(Integer.BYTES * 2 + Long.BYTES);
+            if (magic != MAGIC || version != VERSION)
+                return invalidGeneration(number, "unknown header");
+            if (count < 0 || size != HEADER_BYTES + count * Long.BYTES)
+                return invalidGeneration(number, "size mismatch");
+
+            ByteBuffer data = mapped.slice(HEADER_BYTES, (int) (count * Long.BYTES));
+            CRC32 crc32 = new CRC32();
+            crc32.update(data.duplicate());
+            if (crc32.getValue() != checksum)
+                return invalidGeneration(number, "checksum mismatch");
+
+            return new Generation(number, data.asLongBuffer(), (int) count);
+        } catch (IOException e) {
+            log.warn("MatchIdIndex::loadGeneration unable to read generation {}, {}", number, e.getMessage());
+            return null;
+        }
+    }
+
+    private Generation invalidGeneration(int number, String reason) {
+        log.warn("MatchIdIndex::loadGeneration generation {} is corrupt ({}), rebuilding", number, reason);
+        return null;
+    }
+
+    private int findLatestGenerationNumber() throws IOException {
+        int latest = 0;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, INDEX_FILE_PREFIX + "*" + INDEX_FILE_EXTENSION)) {
+            for (Path path : directoryStream) {
+                latest = Math.max(latest, generationNumber(path));
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Older generations may still be mapped by in-flight readers (and cannot be deleted while mapped on Windows),
+     * failures are ignored and retried on the next merge/startup.
+     */
+    private void deleteStaleGenerations(int currentNumber) {
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, INDEX_FILE_PREFIX + "*" + INDEX_FILE_EXTENSION)) {
+            for (Path path : directoryStream) {
+                int number = generationNumber(path);
+                if (number > 0 && number < currentNumber) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        log.debug("MatchIdIndex::deleteStaleGenerations unable to delete {}", path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("MatchIdIndex::deleteStaleGenerations unable to list {}, {}", directory, e.getMessage());
+        }
+    }
+
+    private Path generationPath(int number) {
+        return directory.resolve(String.format("%s%06d%s", INDEX_FILE_PREFIX, number, INDEX_FILE_EXTENSION));
+    }
+
+    private static int generationNumber(Path path) {
+        String fileName = path.getFileName().toString();
+        try {
+            return Integer.parseInt(fileName.substring(INDEX_FILE_PREFIX.length(), fileName.length() - INDEX_FILE_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static BloomFilter newBloomFilter(Generation generation) {
+        BloomFilter bloomFilter = new BloomFilter(Math.max(MIN_BLOOM_FILTER_INSERTIONS, generation.count() * 2L), BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+        for (int i = 0; i < generation.count(); i++)
+            bloomFilter.put(generation.sortedMatchIds().get(i));
+        return bloomFilter;
+    }
+
+    private static long[] mergeSorted(Generation current, long[] sortedPending) {
+        long[] merged = new long[current.count() + sortedPending.length];
+        int i = 0, j = 0, k = 0;
+        while (i < current.count() || j < sortedPending.length) {
+            long next;
+            if (j >= sortedPending.length || (i < current.count() && current.sortedMatchIds().get(i) <= sortedPending[j]))
+                next = current.sortedMatchIds().get(i++);
+            else
+                next = sortedPending[j++];
+            if (k == 0 || merged[k - 1] != next)
+                merged[k++] = next;
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int k = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (k == 0 || sorted[k - 1] != sorted[i])
+                sorted[k++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, k);
+    }
+
+    /**
+     * Immutable, memory-mapped view of one index generation. Absolute LongBuffer reads are safe from many threads.
+     */
+    private record Generation(int number, LongBuffer sortedMatchIds, int count) {
+
+        boolean contains(long matchId) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midValue = sortedMatchIds.get(mid);
+                if (midValue < matchId)
+                    low = mid + 1;
+                else if (midValue > matchId)
+                    high = mid - 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+    }
+}
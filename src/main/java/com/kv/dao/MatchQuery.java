@@ -0,0 +1,64 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.PlayersDto;
+
+/**
+ * Query of {@link MatchDetailsDao#findMatches(MatchQuery)}: stored matches of an account and/or a hero, optionally
+ * within a start time range, newest first.
+ *
+ * @param accountId       32-bit account ID, null for any account
+ * @param heroId          null for any hero; combined with an account ID it selects the matches the account played on that hero
+ * @param fromEpochSecond inclusive lower bound of start_time
+ * @param toEpochSecond   exclusive upper bound of start_time
+ * @param limit           max matches returned, the newest ones
+ */
+public record MatchQuery(Long accountId, Integer heroId, long fromEpochSecond, long toEpochSecond, int limit) {
+
+    private static final MatchQuery ALL = new MatchQuery(null, null, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    public static MatchQuery forAccount(long accountId) {
+        return new MatchQuery(accountId, null, ALL.fromEpochSecond, ALL.toEpochSecond, ALL.limit);
+    }
+
+    public static MatchQuery forHero(int heroId) {
+        return new MatchQuery(null, heroId, ALL.fromEpochSecond, ALL.toEpochSecond, ALL.limit);
+    }
+
+    public static MatchQuery startedBetween(long fromEpochSecond, long toEpochSecond) {
+        return ALL.withStartedBetween(fromEpochSecond, toEpochSecond);
+    }
+
+    public MatchQuery withHero(int heroId) {
+        return new MatchQuery(accountId, heroId, fromEpochSecond, toEpochSecond, limit);
+    }
+
+    public MatchQuery withStartedBetween(long fromEpochSecond, long toEpochSecond) {
+        return new MatchQuery(accountId, heroId, fromEpochSecond, toEpochSecond, limit);
+    }
+
+    public MatchQuery withStartedAtOrAfter(long fromEpochSecond) {
+        return withStartedBetween(fromEpochSecond, Long.MAX_VALUE);
+    }
+
+    public MatchQuery withLimit(int limit) {
+        return new MatchQuery(accountId, heroId, fromEpochSecond, toEpochSecond, limit);
+    }
+
+    /**
+     * Evaluates the query against a single match, for matches not covered by an index yet.
+     */
+    public boolean matches(MatchDetailsDto matchDetailsDto) {
+        if (matchDetailsDto.getStart_time() < fromEpochSecond || matchDetailsDto.getStart_time() >= toEpochSecond)
+            return false;
+        if (accountId == null && heroId == null)
+            return true;
+        if (matchDetailsDto.getPlayers() == null)
+            return false;
+        for (PlayersDto player : matchDetailsDto.getPlayers()) {
+            if ((accountId == null || player.getAccount_id() == accountId) && (heroId == null || player.getHero_id() == heroId))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,380 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.PlayersDto;
+import com.kv.util.AccountHeroKeys;
+import com.kv.util.LongLongHashMap;
+import com.kv.util.LongPostingList;
+import com.kv.util.SnapshotFile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ *     Secondary indexes of the local match store, maintained as matches are saved through {@link MatchDetailsDao}:
+ *     account ID -> match IDs, hero ID -> match IDs, (account ID, hero ID) -> match IDs and all match IDs ordered by
+ *     start_time. They back {@link MatchDetailsDao#findMatches(MatchQuery)}, so "matches of account X on hero Y in the
+ *     last 7 days" is answered from local storage instead of Steam.
+ * </p>
+ * <p>
+ *     Posting lists are sorted primitive arrays ({@link LongPostingList}), the start_time order is a pair of parallel
+ *     long arrays. A query walks whichever is shorter: the selected posting list (then sorted by start time) or the
+ *     start time range (already ordered, filtered with a binary search in the posting list).
+ * </p>
+ * <p>
+ *     Snapshotted to {@code <kv.datasource.url>/dota2/INDEX/secondary-index.bin} ({@link SnapshotFile}) every
+ *     {@code kv.datasource.secondary-index.flush-interval-seconds} when changed and on shutdown, and reloaded on startup.
+ *     Once the application is ready, stored matches missing from the index (saved after the last snapshot before a
+ *     crash, or while the index was disabled) are indexed in the background, see {@link MatchStoreReconciler}.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.datasource.secondary-index.enabled -> false disables the indexes and {@code findMatches} (default true)</li>
+ *     <li>kv.datasource.secondary-index.flush-interval-seconds -> snapshot interval (default 30)</li>
+ *     <li>kv.datasource.secondary-index.reconcile.enabled -> false skips the startup reconcile with the match store (default true)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "kv.datasource.secondary-index.enabled", havingValue = "true", matchIfMissing = true)
+public class MatchSecondaryIndex implements MatchDetailsSaveListener {
+
+    private static final int MAGIC = 0x4B565349; // "KVSI"
+    private static final int VERSION = 1;
+
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String INDEX_DIRECTORY_NAME = "INDEX";
+    private static final String SNAPSHOT_FILE_NAME = "secondary-index.bin";
+
+    private final SnapshotFile snapshotFile;
+    private final boolean reconcileEnabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //lazy, the match store itself depends on its save listeners
+    @Autowired
+    private ObjectProvider<MatchDetailsDao<MatchDetailsDto>> matchDetailsDaoProvider;
+
+    private LongLongHashMap startTimeByMatchId = new LongLongHashMap(1 << 12);
+    //parallel arrays ordered by (start_time, match ID)
+    private long[] orderedStartTimes = new long[1 << 12];
+    private long[] orderedMatchIds = new long[1 << 12];
+    private int orderedSize;
+
+    //key -> slot in postings
+    private LongLongHashMap accountPostingSlots = new LongLongHashMap();
+    private LongLongHashMap heroPostingSlots = new LongLongHashMap();
+    private LongLongHashMap accountHeroPostingSlots = new LongLongHashMap();
+    private List<LongPostingList> postings = new ArrayList<>();
+
+    public MatchSecondaryIndex(Environment environment) {
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        Path snapshotPath = dbBaseUrl != null ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, INDEX_DIRECTORY_NAME, SNAPSHOT_FILE_NAME) : null;
+        this.snapshotFile = new SnapshotFile(snapshotPath, MAGIC, VERSION, "secondary-index",
+                environment.getProperty("kv.datasource.secondary-index.flush-interval-seconds", Long.class, 30L), this::writeSnapshot);
+        this.reconcileEnabled = environment.getProperty("kv.datasource.secondary-index.reconcile.enabled", Boolean.class, true);
+        snapshotFile.load(this::readSnapshot);
+    }
+
+    /**
+     * Indexes the stored matches missing from the index, in the background.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!reconcileEnabled)
+            return;
+        MatchDetailsDao<MatchDetailsDto> matchDetailsDao = matchDetailsDaoProvider.getIfAvailable();
+        if (matchDetailsDao != null)
+            Thread.ofVirtual().name("secondary-index-reconcile").start(() ->
+                    MatchStoreReconciler.reconcile("MatchSecondaryIndex", matchDetailsDao, this::isIndexed, this::index));
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshotFile.close();
+    }
+
+    @Override
+    public void onSaved(MatchDetailsDto matchDetailsDto) {
+        index(matchDetailsDto);
+    }
+
+    /**
+     * Adds the match to every index.
+     *
+     * @return false if the match was already indexed.
+     */
+    public boolean index(MatchDetailsDto matchDetailsDto) {
+        long matchId = matchDetailsDto.getMatch_id();
+        lock.writeLock().lock();
+        try {
+            if (startTimeByMatchId.containsKey(matchId))
+                return false;
+            startTimeByMatchId.put(matchId, matchDetailsDto.getStart_time());
+            insertOrdered(matchDetailsDto.getStart_time(), matchId);
+
+            if (matchDetailsDto.getPlayers() != null) {
+                for (PlayersDto player : matchDetailsDto.getPlayers()) {
+                    int heroId = player.getHero_id();
+                    boolean knownHero = AccountHeroKeys.isKnownHero(heroId);
+                    if (knownHero)
+                        posting(heroPostingSlots, postings, heroId).add(matchId);
+                    if (AccountHeroKeys.isIdentifiedAccount(player.getAccount_id())) {
+                        posting(accountPostingSlots, postings, player.getAccount_id()).add(matchId);
+                        if (knownHero)
+                            posting(accountHeroPostingSlots, postings, AccountHeroKeys.accountHeroKey(player.getAccount_id(), heroId)).add(matchId);
+                    }
+                }
+            }
+            snapshotFile.markDirty();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return IDs of the indexed matches selected by the query, newest first.
+     */
+    public long[] findMatchIds(MatchQuery query) {
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(query.fromEpochSecond());
+            int to = query.toEpochSecond() == Long.MAX_VALUE ? orderedSize : lowerBound(query.toEpochSecond());
+            int limit = Math.max(0, query.limit());
+            if (from >= to || limit == 0)
+                return new long[0];
+
+            LongPostingList posting = selectPosting(query);
+            if (posting == NO_MATCHES)
+                return new long[0];
+
+            if (posting == null || posting.size() >= to - from) {
+                //walk the start time range newest first, already in result order
+                long[] matchIds = new long[Math.min(limit, to - from)];
+                int found = 0;
+                for (int i = to - 1; i >= from && found < matchIds.length; i--) {
+                    if (posting == null || posting.contains(orderedMatchIds[i]))
+                        matchIds[found++] = orderedMatchIds[i];
+                }
+                return Arrays.copyOf(matchIds, found);
+            }
+
+            //short posting list: filter by start time, then order newest first
+            List<long[]> hits = new ArrayList<>();
+            for (int i = 0; i < posting.size(); i++) {
+                long matchId = posting.get(i);
+                long startTime = startTimeByMatchId.get(matchId);
+                if (startTime >= query.fromEpochSecond() && startTime < query.toEpochSecond())
+                    hits.add(new long[]{startTime, matchId});
+            }
+            hits.sort(Comparator.<long[]>comparingLong(hit -> hit[0]).thenComparingLong(hit -> hit[1]).reversed());
+            return hits.stream().limit(limit).mapToLong(hit -> hit[1]).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resolves {@link #findMatchIds(MatchQuery)} against the store.
+     *
+     * @return stored matches selected by the query, newest first; matches missing from the store are skipped.
+     */
+    public List<MatchDetailsDto> findMatches(MatchQuery query, MatchDetailsDao<MatchDetailsDto> matchDetailsDao) {
+        long[] matchIds = findMatchIds(query);
+        if (matchIds.length == 0)
+            return List.of();
+
+        Map<Long, MatchDetailsDto> found = matchDetailsDao.findByMatchIds(Arrays.stream(matchIds).boxed().toList()).found();
+        List<MatchDetailsDto> matches = new ArrayList<>(found.size());
+        for (long matchId : matchIds) {
+            MatchDetailsDto matchDetailsDto = found.get(matchId);
+            if (matchDetailsDto != null)
+                matches.add(matchDetailsDto);
+        }
+        return matches;
+    }
+
+    public boolean isIndexed(long matchId) {
+        lock.readLock().lock();
+        try {
+            return startTimeByMatchId.containsKey(matchId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getIndexedMatchCount() {
+        lock.readLock().lock();
+        try {
+            return orderedSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot if anything changed since the last one.
+     */
+    public void flush() {
+        snapshotFile.flush();
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(orderedSize);
+            for (int i = 0; i < orderedSize; i++) {
+                out.writeLong(orderedStartTimes[i]);
+                out.writeLong(orderedMatchIds[i]);
+            }
+            //account postings are the union of the account-hero ones, rebuilt on load
+            writePostings(out, heroPostingSlots);
+            writePostings(out, accountHeroPostingSlots);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writePostings(DataOutputStream out, LongLongHashMap postingSlots) throws IOException {
+        out.writeInt(postingSlots.size());
+        List<IOException> errors = new ArrayList<>(1);
+        postingSlots.forEach((key, slot) -> {
+            if (!errors.isEmpty())
+                return;
+            try {
+                long[] matchIds = postings.get((int) slot).toArray();
+                out.writeLong(key);
+                out.writeInt(matchIds.length);
+                for (long matchId : matchIds)
+                    out.writeLong(matchId);
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        });
+        if (!errors.isEmpty())
+            throw errors.get(0);
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        int matchCount = in.readInt();
+        long[] startTimes = new long[Math.max(1, matchCount)];
+        long[] matchIds = new long[Math.max(1, matchCount)];
+        LongLongHashMap snapshotStartTimeByMatchId = new LongLongHashMap(Math.max(64, matchCount));
+        for (int i = 0; i < matchCount; i++) {
+            startTimes[i] = in.readLong();
+            matchIds[i] = in.readLong();
+            snapshotStartTimeByMatchId.put(matchIds[i], startTimes[i]);
+        }
+
+        List<LongPostingList> snapshotPostings = new ArrayList<>();
+        LongLongHashMap snapshotHeroPostingSlots = new LongLongHashMap();
+        int heroCount = in.readInt();
+        for (int i = 0; i < heroCount; i++) {
+            LongPostingList posting = posting(snapshotHeroPostingSlots, snapshotPostings, in.readLong());
+            for (int j = in.readInt(); j > 0; j--)
+                posting.add(in.readLong());
+        }
+        LongLongHashMap snapshotAccountHeroPostingSlots = new LongLongHashMap();
+        LongLongHashMap snapshotAccountPostingSlots = new LongLongHashMap();
+        int accountHeroCount = in.readInt();
+        for (int i = 0; i < accountHeroCount; i++) {
+            long accountHeroKey = in.readLong();
+            LongPostingList accountHeroPosting = posting(snapshotAccountHeroPostingSlots, snapshotPostings, accountHeroKey);
+            LongPostingList accountPosting = posting(snapshotAccountPostingSlots, snapshotPostings, AccountHeroKeys.accountIdOf(accountHeroKey));
+            for (int j = in.readInt(); j > 0; j--) {
+                long matchId = in.readLong();
+                accountHeroPosting.add(matchId);
+                accountPosting.add(matchId);
+            }
+        }
+
+        //only applied once fully read, a truncated snapshot leaves the index empty
+        this.orderedStartTimes = startTimes;
+        this.orderedMatchIds = matchIds;
+        this.orderedSize = matchCount;
+        this.startTimeByMatchId = snapshotStartTimeByMatchId;
+        this.postings = snapshotPostings;
+        this.heroPostingSlots = snapshotHeroPostingSlots;
+        this.accountHeroPostingSlots = snapshotAccountHeroPostingSlots;
+        this.accountPostingSlots = snapshotAccountPostingSlots;
+        log.info("Loaded secondary index snapshot: {} matches, {} accounts, {} heroes", matchCount, accountPostingSlots.size(), heroPostingSlots.size());
+    }
+
+    //sentinel of selectPosting: the query selects an account / hero that has no indexed match
+    private static final LongPostingList NO_MATCHES = new LongPostingList(1);
+
+    /**
+     * @return posting list selected by the account / hero of the query, null if the query selects neither.
+     */
+    private LongPostingList selectPosting(MatchQuery query) {
+        long slot;
+        if (query.accountId() != null && query.heroId() != null)
+            slot = accountHeroPostingSlots.get(AccountHeroKeys.accountHeroKey(query.accountId(), query.heroId()));
+        else if (query.accountId() != null)
+            slot = accountPostingSlots.get(query.accountId());
+        else if (query.heroId() != null)
+            slot = heroPostingSlots.get(query.heroId());
+        else
+            return null;
+        return slot == LongLongHashMap.NO_VALUE ? NO_MATCHES : postings.get((int) slot);
+    }
+
+    private static LongPostingList posting(LongLongHashMap postingSlots, List<LongPostingList> postings, long key) {
+        long slot = postingSlots.get(key);
+        if (slot != LongLongHashMap.NO_VALUE)
+            return postings.get((int) slot);
+        LongPostingList posting = new LongPostingList();
+        postingSlots.put(key, postings.size());
+        postings.add(posting);
+        return posting;
+    }
+
+    private void insertOrdered(long startTime, long matchId) {
+        int index = orderedSize;
+        //matches are mostly saved in start time order, so the insertion point is usually the end
+        while (index > 0 && (orderedStartTimes[index - 1] > startTime || orderedStartTimes[index - 1] == startTime && orderedMatchIds[index - 1] > matchId))
+            index--;
+        if (orderedSize == orderedStartTimes.length) {
+            int capacity = orderedStartTimes.length + (orderedStartTimes.length >> 1) + 1;
+            orderedStartTimes = Arrays.copyOf(orderedStartTimes, capacity);
+            orderedMatchIds = Arrays.copyOf(orderedMatchIds, capacity);
+        }
+        System.arraycopy(orderedStartTimes, index, orderedStartTimes, index + 1, orderedSize - index);
+        System.arraycopy(orderedMatchIds, index, orderedMatchIds, index + 1, orderedSize - index);
+        orderedStartTimes[index] = startTime;
+        orderedMatchIds[index] = matchId;
+        orderedSize++;
+    }
+
+    //index of the first start time >= given one
+    private int lowerBound(long epochSecond) {
+        int low = 0;
+        int high = orderedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (orderedStartTimes[mid] < epochSecond)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
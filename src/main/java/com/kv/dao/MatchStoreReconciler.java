@@ -0,0 +1,70 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.util.LongHashSet;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Startup catch-up of the {@link MatchDetailsSaveListener}s keeping derived state in memory: stored matches the listener
+ * has not seen are replayed into it. These are the matches saved after its last snapshot before a crash, and the ones
+ * stored while it was disabled or did not exist yet. Stored matches never re-fire {@code onSaved}, so without this they
+ * would be missing for good.
+ */
+@Log4j2
+public final class MatchStoreReconciler {
+
+    private static final int BATCH_SIZE = 256;
+
+    private MatchStoreReconciler() {
+    }
+
+    /**
+     * @param isKnown tells whether the listener already has the match
+     * @param replay  feeds a stored match into the listener, must ignore matches it already has
+     * @return matches replayed.
+     */
+    public static int reconcile(String listenerName, MatchDetailsDao<MatchDetailsDto> matchDetailsDao, LongPredicate isKnown,
+                                Consumer<MatchDetailsDto> replay) {
+        if (!matchDetailsDao.isDataSourceEnabled())
+            return 0;
+
+        long startNanos = System.nanoTime();
+        LongHashSet unknownMatchIds = new LongHashSet();
+        try {
+            matchDetailsDao.forEachStoredMatchId(matchId -> {
+                if (!isKnown.test(matchId))
+                    unknownMatchIds.add(matchId);
+            });
+        } catch (UnsupportedOperationException e) {
+            log.warn("{}: {}, skipping reconcile with the match store", listenerName, e.getMessage());
+            return 0;
+        }
+
+        int replayed = 0;
+        //oldest first, like they were saved, so order dependent state (ex: streaks) comes out right
+        long[] matchIds = unknownMatchIds.toArray();
+        Arrays.sort(matchIds);
+        for (int batchStart = 0; batchStart < matchIds.length; batchStart += BATCH_SIZE) {
+            List<Long> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = batchStart; i < Math.min(batchStart + BATCH_SIZE, matchIds.length); i++)
+                batch.add(matchIds[i]);
+            List<MatchDetailsDto> found = new ArrayList<>(matchDetailsDao.findByMatchIds(batch).found().values());
+            found.sort(Comparator.comparingLong(MatchDetailsDto::getStart_time));
+            for (MatchDetailsDto matchDetailsDto : found) {
+                replay.accept(matchDetailsDto);
+                replayed++;
+            }
+        }
+        log.info("{}: reconciled with the match store, replayed {} of {} unknown stored matches in {} ms", listenerName, replayed,
+                matchIds.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return replayed;
+    }
+}
@@ -0,0 +1,465 @@
+package com.kv.dao;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>
+ *     Write-behind stage in front of the configured {@link MatchDetailsDao} (file storage or segmented log): {@link #save}
+ *     only queues the match, a background writer hands queued matches to the storage's {@link MatchDetailsDao#saveAll}
+ *     in batches, so request threads no longer wait for disk I/O.
+ * </p>
+ * <p>
+ *     Queued matches are keyed by match ID, saving a match that is still queued replaces it instead of writing it twice.
+ *     Lookups see queued and currently written matches before falling through to the storage. The writer flushes once
+ *     {@code batch-size} matches are queued or {@code flush-interval-ms} after the oldest one was queued.
+ * </p>
+ * <p>
+ *     A full queue blocks the saving thread for up to {@code offer-timeout-ms}, after that the match is written
+ *     synchronously on the saving thread, nothing is dropped. On shutdown the queue is drained before the storage is
+ *     closed.
+ * </p>
+ * <p>
+ *     Matches the storage reports as not written ({@link MatchDetailsSaveException}) go back into the queue, unless a
+ *     newer version was queued meanwhile, and the writer backs off before the next batch; any other batch failure is
+ *     retried one match at a time first. Readers keep seeing them throughout. After shutdown a failing match is given up
+ *     after {@value #SHUTDOWN_WRITE_ATTEMPTS} attempts, with an error log naming it. Failing {@link MatchDetailsSaveListener}s
+ *     are handled by the storage and never fail a write.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.datasource.write-behind.enabled=true -> activates this stage</li>
+ *     <li>kv.datasource.write-behind.capacity -> max queued matches (default 10000)</li>
+ *     <li>kv.datasource.write-behind.batch-size -> matches per write batch (default 500)</li>
+ *     <li>kv.datasource.write-behind.flush-interval-ms -> max time a match stays queued (default 1000)</li>
+ *     <li>kv.datasource.write-behind.offer-timeout-ms -> wait on a full queue before writing synchronously (default 5000)</li>
+ *     <li>kv.datasource.write-behind.retry-backoff-ms -> wait after a failed write, doubled per consecutive failure up to 30 s (default 1000)</li>
+ * </ul>
+ */
+@Service
+@Primary
+@Log4j2
+@ConditionalOnProperty(name = "kv.datasource.write-behind.enabled", havingValue = "true")
+public class WriteBehindMatchDetailsDao implements MatchDetailsDao<MatchDetailsDto> {
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+    //write attempts of a failing match once close() was called, before it is given up
+    private static final int SHUTDOWN_WRITE_ATTEMPTS = 3;
+
+    private final MatchDetailsDao<MatchDetailsDto> storage;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final long retryBackoffMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition stopped = lock.newCondition();
+    //match ID -> latest queued version, in queueing order
+    private final LinkedHashMap<Long, MatchDetailsDto> queued = new LinkedHashMap<>();
+    //batch handed to the storage, still served to readers until written
+    private Map<Long, MatchDetailsDto> writing = Map.of();
+    private long oldestQueuedAtNanos;
+    private boolean running;
+
+    private final Thread writerThread;
+
+    private final LongAdder matchesSaved = new LongAdder();
+    private final LongAdder matchesCoalesced = new LongAdder();
+    private final LongAdder matchesWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private final LongAdder backpressureNanos = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+
+    /**
+     * @param storageDaos the storage implementation selected by {@code kv.datasource.type}; this bean itself is never
+     *                    injected into its own list
+     */
+    public WriteBehindMatchDetailsDao(Environment environment, List<MatchDetailsDao<MatchDetailsDto>> storageDaos) {
+        if (storageDaos.size() != 1)
+            throw new IllegalStateException("Write-behind requires exactly one MatchDetailsDao storage, found: " + storageDaos.size());
+        this.storage = storageDaos.get(0);
+        this.capacity = Math.max(1, environment.getProperty("kv.datasource.write-behind.capacity", Integer.class, 10_000));
+        this.batchSize = Math.max(1, environment.getProperty("kv.datasource.write-behind.batch-size", Integer.class, 500));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("kv.datasource.write-behind.flush-interval-ms", Long.class, 1_000L));
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("kv.datasource.write-behind.offer-timeout-ms", Long.class, 5_000L));
+        this.retryBackoffMillis = Math.max(1, environment.getProperty("kv.datasource.write-behind.retry-backoff-ms", Long.class, 1_000L));
+
+        if (storage.isDataSourceEnabled()) {
+            this.running = true;
+            this.writerThread = Thread.ofPlatform().daemon().name("match-details-write-behind").start(this::writeLoop);
+        } else {
+            this.writerThread = null;
+        }
+        log.info("WriteBehindMatchDetailsDao storage: {}, capacity: {}, batchSize: {}, flushIntervalMs: {}", storage.getClass().getSimpleName(),
+                capacity, batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    /**
+     * Stops accepting matches into the queue and waits until everything queued was written to the storage.
+     */
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            if (!running)
+                return;
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            stopped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("WriteBehindMatchDetailsDao closed, stats: {}", getStats());
+    }
+
+    @Override
+    public boolean isDataSourceEnabled() {
+        return storage.isDataSourceEnabled();
+    }
+
+    @Override
+    public MatchDetailsDto save(MatchDetailsDto matchDetailsDto) {
+        if (!enqueue(matchDetailsDto)) {
+            synchronousWrites.increment();
+            storage.save(matchDetailsDto);
+        }
+        return matchDetailsDto;
+    }
+
+    @Override
+    public void saveAll(Collection<MatchDetailsDto> matchDetailsDtos) {
+        List<MatchDetailsDto> rejected = new ArrayList<>();
+        for (MatchDetailsDto matchDetailsDto : matchDetailsDtos) {
+            if (!enqueue(matchDetailsDto))
+                rejected.add(matchDetailsDto);
+        }
+        if (!rejected.isEmpty()) {
+            synchronousWrites.add(rejected.size());
+            storage.saveAll(rejected);
+        }
+    }
+
+    /**
+     * Bypasses the queue, a still queued copy of one of the matches is skipped by the storage once its turn comes.
+     */
+    @Override
+    public void saveAllSynchronously(Collection<MatchDetailsDto> matchDetailsDtos) {
+        synchronousWrites.add(matchDetailsDtos.size());
+        storage.saveAll(matchDetailsDtos);
+    }
+
+    @Override
+    public MatchDetailsDto findByMatchId(Object matchId) {
+        long pk;
+        try {
+            pk = Long.parseLong(String.valueOf(matchId));
+        } catch (NumberFormatException e) {
+            return storage.findByMatchId(matchId);
+        }
+        MatchDetailsDto buffered = findBuffered(pk);
+        return buffered != null ? buffered : storage.findByMatchId(matchId);
+    }
+
+    @Override
+    public BulkLookupResult<MatchDetailsDto> findByMatchIds(Collection<Long> matchIds) {
+        Map<Long, MatchDetailsDto> found = new HashMap<>();
+        List<Long> unbufferedMatchIds = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Long matchId : matchIds) {
+                MatchDetailsDto buffered = findBufferedLocked(matchId);
+                if (buffered != null)
+                    found.put(matchId, buffered);
+                else
+                    unbufferedMatchIds.add(matchId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (unbufferedMatchIds.isEmpty())
+            return new BulkLookupResult<>(found, new HashSet<>());
+
+        BulkLookupResult<MatchDetailsDto> stored = storage.findByMatchIds(unbufferedMatchIds);
+        found.putAll(stored.found());
+        return new BulkLookupResult<>(found, stored.missing());
+    }
+
+    /**
+     * Storage results merged with queued matches selected by the query, which are not indexed until written.
+     */
+    @Override
+    public List<MatchDetailsDto> findMatches(MatchQuery query) {
+        List<MatchDetailsDto> bufferedMatches = new ArrayList<>();
+        lock.lock();
+        try {
+            writing.values().stream().filter(query::matches).forEach(bufferedMatches::add);
+            queued.values().stream().filter(query::matches).forEach(bufferedMatches::add);
+        } finally {
+            lock.unlock();
+        }
+        List<MatchDetailsDto> storedMatches = storage.findMatches(query);
+        if (bufferedMatches.isEmpty())
+            return storedMatches;
+
+        Map<Long, MatchDetailsDto> matches = new HashMap<>();
+        storedMatches.forEach(match -> matches.put(match.getMatch_id(), match));
+        //buffered copies are the newer ones
+        bufferedMatches.forEach(match -> matches.put(match.getMatch_id(), match));
+        return matches.values().stream()
+                .sorted(Comparator.comparingLong(MatchDetailsDto::getStart_time).thenComparingLong(MatchDetailsDto::getMatch_id).reversed())
+                .limit(Math.max(0, query.limit()))
+                .toList();
+    }
+
+    /**
+     * Stored matches only, queued ones are reported to the save listeners once written.
+     */
+    @Override
+    public void forEachStoredMatchId(LongConsumer matchIdConsumer) {
+        storage.forEachStoredMatchId(matchIdConsumer);
+    }
+
+    public WriteBehindStats getStats() {
+        int queuedCount;
+        lock.lock();
+        try {
+            queuedCount = queued.size() + writing.size();
+        } finally {
+            lock.unlock();
+        }
+        return new WriteBehindStats(queuedCount, matchesSaved.sum(), matchesCoalesced.sum(), matchesWritten.sum(), batchesWritten.sum(),
+                synchronousWrites.sum(), failedWrites.sum(), TimeUnit.NANOSECONDS.toMillis(backpressureNanos.sum()));
+    }
+
+    /**
+     * @param queued             matches not yet written, including the batch being written
+     * @param coalesced          saves that replaced a still queued version of the same match
+     * @param synchronousWrites  saves written on the caller's thread: full queue past the offer timeout, after shutdown,
+     *                           or via {@link #saveAllSynchronously}
+     * @param failedWrites       matches whose write failed and was requeued for a retry
+     * @param backpressureMillis total time saving threads waited on a full queue
+     */
+    public record WriteBehindStats(int queued, long saved, long coalesced, long written, long batches, long synchronousWrites,
+                                   long failedWrites, long backpressureMillis) {
+    }
+
+    /**
+     * @return false if the match has to be written synchronously by the caller.
+     */
+    private boolean enqueue(MatchDetailsDto matchDetailsDto) {
+        long matchId = matchDetailsDto.getMatch_id();
+        lock.lock();
+        try {
+            if (!running)
+                return false;
+            matchesSaved.increment();
+            if (queued.replace(matchId, matchDetailsDto) != null) {
+                matchesCoalesced.increment();
+                return true;
+            }
+
+            if (queued.size() >= capacity) {
+                long waitStartNanos = System.nanoTime();
+                long remainingNanos = offerTimeoutNanos;
+                try {
+                    while (running && queued.size() >= capacity && remainingNanos > 0)
+                        remainingNanos = notFull.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    backpressureNanos.add(System.nanoTime() - waitStartNanos);
+                }
+                if (!running || queued.size() >= capacity)
+                    return false;
+            }
+
+            boolean wasEmpty = queued.isEmpty();
+            if (wasEmpty)
+                oldestQueuedAtNanos = System.nanoTime();
+            queued.put(matchId, matchDetailsDto);
+            //wakes the writer to start the flush interval, and again once a full batch is due
+            if (wasEmpty || queued.size() >= batchSize)
+                notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MatchDetailsDto findBuffered(long matchId) {
+        lock.lock();
+        try {
+            return findBufferedLocked(matchId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MatchDetailsDto findBufferedLocked(long matchId) {
+        MatchDetailsDto queuedMatch = queued.get(matchId);
+        return queuedMatch != null ? queuedMatch : writing.get(matchId);
+    }
+
+    private void writeLoop() {
+        int consecutiveFailures = 0;
+        while (true) {
+            Map<Long, MatchDetailsDto> batch = takeBatch();
+            if (batch == null)
+                return;
+            List<MatchDetailsDto> failed = write(batch);
+            consecutiveFailures = failed.isEmpty() ? 0 : consecutiveFailures + 1;
+
+            boolean retry;
+            lock.lock();
+            try {
+                //after shutdown a failing match must not keep close() waiting forever
+                retry = running || consecutiveFailures < SHUTDOWN_WRITE_ATTEMPTS;
+                if (retry && !failed.isEmpty()) {
+                    if (queued.isEmpty())
+                        oldestQueuedAtNanos = System.nanoTime();
+                    //a version saved while the batch was written is newer than the failed one
+                    failed.forEach(match -> queued.putIfAbsent(match.getMatch_id(), match));
+                }
+                writing = Map.of();
+            } finally {
+                lock.unlock();
+            }
+
+            if (!failed.isEmpty() && !retry)
+                log.error("Giving up on {} match details that could not be written at shutdown: {}", failed.size(),
+                        failed.stream().map(MatchDetailsDto::getMatch_id).toList());
+            else if (!failed.isEmpty())
+                backOff(consecutiveFailures);
+        }
+    }
+
+    /**
+     * Writes the batch. Matches the storage reports as failed are returned for a retry, any other failure falls back to
+     * one match at a time, so one bad match does not sink the others.
+     *
+     * @return matches that could not be written.
+     */
+    private List<MatchDetailsDto> write(Map<Long, MatchDetailsDto> batch) {
+        batchesWritten.increment();
+        try {
+            storage.saveAll(batch.values());
+            matchesWritten.add(batch.size());
+            return List.of();
+        } catch (MatchDetailsSaveException e) {
+            log.error("Error occurred while writing {} queued match details, {} of them failed", batch.size(), e.getFailedMatchIds().size(), e);
+            List<MatchDetailsDto> failed = batch.values().stream().filter(match -> e.getFailedMatchIds().contains(match.getMatch_id())).toList();
+            matchesWritten.add(batch.size() - failed.size());
+            failedWrites.add(failed.size());
+            return failed;
+        } catch (RuntimeException e) {
+            log.error("Error occurred while writing {} queued match details, writing them one by one", batch.size(), e);
+        }
+
+        //matches written before the failure are skipped by the storage, which never overwrites a stored match
+        List<MatchDetailsDto> failed = new ArrayList<>();
+        for (MatchDetailsDto matchDetailsDto : batch.values()) {
+            try {
+                storage.save(matchDetailsDto);
+                matchesWritten.increment();
+            } catch (RuntimeException e) {
+                log.error("Error occurred while writing queued match details, matchId: {}", matchDetailsDto.getMatch_id(), e);
+                failed.add(matchDetailsDto);
+            }
+        }
+        failedWrites.add(failed.size());
+        return failed;
+    }
+
+    /**
+     * Waits before the next batch after a failed write, doubling {@code retry-backoff-ms} per consecutive failure up to
+     * {@link #MAX_RETRY_BACKOFF_MILLIS}. Cut short by close().
+     */
+    private void backOff(int consecutiveFailures) {
+        long backoffMillis = Math.min(MAX_RETRY_BACKOFF_MILLIS, retryBackoffMillis << Math.min(consecutiveFailures - 1, 16));
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        lock.lock();
+        try {
+            while (running && remainingNanos > 0)
+                remainingNanos = stopped.awaitNanos(remainingNanos);
+        } catch (InterruptedException e) {
+            running = false;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a batch is due: {@code batch-size} matches queued, the oldest one queued for {@code flush-interval-ms}
+     * or shutdown.
+     *
+     * @return the next batch, null once stopped and drained.
+     */
+    private Map<Long, MatchDetailsDto> takeBatch() {
+        lock.lock();
+        try {
+            while (true) {
+                try {
+                    if (queued.isEmpty()) {
+                        if (!running)
+                            return null;
+                        notEmpty.await();
+                        continue;
+                    }
+                    long dueInNanos = flushIntervalNanos - (System.nanoTime() - oldestQueuedAtNanos);
+                    if (queued.size() >= batchSize || dueInNanos <= 0 || !running)
+                        break;
+                    notEmpty.awaitNanos(dueInNanos);
+                } catch (InterruptedException e) {
+                    //treated like close(): stop accepting and drain what is queued without waiting any longer
+                    running = false;
+                    notFull.signalAll();
+                }
+            }
+
+            Map<Long, MatchDetailsDto> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<Long, MatchDetailsDto>> iterator = queued.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<Long, MatchDetailsDto> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            //left over entries keep the previous timestamp and are flushed early at worst
+            writing = batch;
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
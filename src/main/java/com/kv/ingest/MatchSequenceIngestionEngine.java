@@ -0,0 +1,391 @@
+package com.kv.ingest;
+
+import com.kv.cache.LocalCache;
+import com.kv.dao.MatchDetailsDao;
+import com.kv.dao.MatchDetailsSaveException;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.PlayersDto;
+import com.kv.service.SteamWebApiQueryService;
+import com.kv.util.LongHashSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *     Continuous ingestion of matches played by a watched set of accounts, walking GetMatchHistoryBySequenceNum forward
+ *     page by page instead of calling GetMatchDetails per match (every page already carries the full match details).
+ * </p>
+ * <p>
+ *     Two stage pipeline: the fetcher thread requests the next page as soon as the previous one is parsed and hands
+ *     pages over through a bounded queue ({@code prefetch-pages} deep), while the writer thread filters them by the
+ *     watched account IDs ({@link LongHashSet}, no boxing per player) and batch-writes the hits through
+ *     {@link MatchDetailsDao#saveAllSynchronously} and the match details cache. A full queue blocks the fetcher, which is the
+ *     backpressure towards Steam, and the time spent blocked is reported in {@link IngestionStats}.
+ * </p>
+ * <p>
+ *     After each flushed batch, the next sequence number to fetch is persisted to the checkpoint file (temp file + atomic
+ *     move), so a restart resumes where the last written batch ended. The checkpoint only advances once the batch is in
+ *     the storage (bypassing a write-behind queue): matches the storage fails to write stay in the batch and hold the
+ *     checkpoint back, and the writer backs off before retrying them, which in turn backpressures the fetcher.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.ingest.enabled=true -> activates the engine</li>
+ *     <li>kv.ingest.auto-start -> start on application startup (default true)</li>
+ *     <li>kv.ingest.watched-account-ids -> comma separated 32-bit account IDs or 64-bit Steam IDs</li>
+ *     <li>kv.ingest.start-match-seq-num -> first sequence number when there is no checkpoint yet</li>
+ *     <li>kv.ingest.checkpoint-file -> checkpoint location (default {@code <kv.datasource.url>/dota2/INGEST/match-seq-num.checkpoint})</li>
+ *     <li>kv.ingest.matches-per-page -> matches_requested per call, max 100 (default 100)</li>
+ *     <li>kv.ingest.prefetch-pages -> pages fetched ahead of the writer (default 4)</li>
+ *     <li>kv.ingest.batch-size -> matches per write batch (default 500)</li>
+ *     <li>kv.ingest.checkpoint-every-pages -> flush / checkpoint at least every N pages (default 20)</li>
+ *     <li>kv.ingest.idle-poll-ms -> wait once caught up with the newest matches (default 10000)</li>
+ *     <li>kv.ingest.max-error-backoff-ms -> cap of the exponential backoff after failed calls (default 60000)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "kv.ingest.enabled", havingValue = "true")
+public class MatchSequenceIngestionEngine {
+
+    private static final long STEAM_ID_64_BASE = 76561197960265728L;
+    private static final int MAX_MATCHES_PER_PAGE = 100;
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String INGEST_DIRECTORY_NAME = "INGEST";
+    private static final String CHECKPOINT_FILE_NAME = "match-seq-num.checkpoint";
+
+    @Autowired
+    private SteamWebApiQueryService steamWebApiQueryService;
+
+    @Autowired
+    private MatchDetailsDao<MatchDetailsDto> matchDetailsDao;
+
+    @Autowired
+    private LocalCache<String, MatchDetailsDto> cacheForMatchDetailsAPI;
+
+    private final boolean autoStart;
+    private final Long configuredStartMatchSeqNum;
+    private final Path checkpointFile;
+    private final int matchesPerPage;
+    private final int batchSize;
+    private final int checkpointEveryPages;
+    private final long idlePollMillis;
+    private final long maxErrorBackoffMillis;
+
+    //copy-on-write, the writer thread reads it without locking
+    private volatile LongHashSet watchedAccountIds;
+
+    private final BlockingQueue<FetchedPage> pageQueue;
+    private volatile boolean running;
+    private Thread fetcherThread;
+    private Thread writerThread;
+
+    private final LongAdder pagesFetched = new LongAdder();
+    private final LongAdder matchesScanned = new LongAdder();
+    private final LongAdder matchesMatched = new LongAdder();
+    private final LongAdder matchesWritten = new LongAdder();
+    private final LongAdder fetchErrors = new LongAdder();
+    private final LongAdder backpressureNanos = new LongAdder();
+    private final AtomicLong nextMatchSeqNum = new AtomicLong(-1);
+    private final AtomicLong checkpointMatchSeqNum = new AtomicLong(-1);
+    private volatile long startedAtNanos;
+
+    public MatchSequenceIngestionEngine(Environment environment) {
+        this.autoStart = environment.getProperty("kv.ingest.auto-start", Boolean.class, true);
+        this.configuredStartMatchSeqNum = environment.getProperty("kv.ingest.start-match-seq-num", Long.class);
+        this.matchesPerPage = Math.clamp(environment.getProperty("kv.ingest.matches-per-page", Integer.class, MAX_MATCHES_PER_PAGE), 1, MAX_MATCHES_PER_PAGE);
+        this.batchSize = environment.getProperty("kv.ingest.batch-size", Integer.class, 500);
+        this.checkpointEveryPages = environment.getProperty("kv.ingest.checkpoint-every-pages", Integer.class, 20);
+        this.idlePollMillis = environment.getProperty("kv.ingest.idle-poll-ms", Long.class, 10_000L);
+        this.maxErrorBackoffMillis = environment.getProperty("kv.ingest.max-error-backoff-ms", Long.class, 60_000L);
+        this.pageQueue = new ArrayBlockingQueue<>(environment.getProperty("kv.ingest.prefetch-pages", Integer.class, 4));
+
+        String checkpointFileProperty = environment.getProperty("kv.ingest.checkpoint-file");
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        if (checkpointFileProperty != null)
+            this.checkpointFile = Path.of(checkpointFileProperty);
+        else
+            this.checkpointFile = dbBaseUrl != null ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, INGEST_DIRECTORY_NAME, CHECKPOINT_FILE_NAME) : null;
+
+        LongHashSet accountIds = new LongHashSet();
+        for (String accountId : environment.getProperty("kv.ingest.watched-account-ids", String[].class, new String[0])) {
+            if (!accountId.isBlank())
+                accountIds.add(toAccountId(Long.parseLong(accountId.trim())));
+        }
+        this.watchedAccountIds = accountIds;
+
+        log.info("MatchSequenceIngestionEngine watchedAccounts: {}, matchesPerPage: {}, prefetchPages: {}, batchSize: {}, checkpointFile: {}",
+                accountIds.size(), matchesPerPage, pageQueue.remainingCapacity(), batchSize, checkpointFile);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (autoStart)
+            start();
+    }
+
+    /**
+     * Resumes from the persisted (or, without a checkpoint file, the in-memory) checkpoint, or starts from
+     * {@code kv.ingest.start-match-seq-num} if there is none yet.
+     *
+     * @return false if already running or no start position is known.
+     */
+    public synchronized boolean start() {
+        Long startMatchSeqNum = readCheckpoint()
+                .or(() -> checkpointMatchSeqNum.get() >= 0 ? Optional.of(checkpointMatchSeqNum.get()) : Optional.empty())
+                .orElse(configuredStartMatchSeqNum);
+        if (startMatchSeqNum == null) {
+            log.error("MatchSequenceIngestionEngine: no checkpoint and no kv.ingest.start-match-seq-num configured, not starting");
+            return false;
+        }
+        return start(startMatchSeqNum);
+    }
+
+    public synchronized boolean start(long startMatchSeqNum) {
+        if (running)
+            return false;
+
+        running = true;
+        startedAtNanos = System.nanoTime();
+        nextMatchSeqNum.set(startMatchSeqNum);
+        checkpointMatchSeqNum.set(startMatchSeqNum);
+        fetcherThread = Thread.ofVirtual().name("match-seq-ingest-fetcher").start(this::fetchLoop);
+        writerThread = Thread.ofVirtual().name("match-seq-ingest-writer").start(this::writeLoop);
+        log.info("MatchSequenceIngestionEngine started at match_seq_num: {}", startMatchSeqNum);
+        return true;
+    }
+
+    /**
+     * Stops fetching, lets the writer drain the already fetched pages and persists the final checkpoint.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running)
+            return;
+
+        running = false;
+        fetcherThread.interrupt();
+        try {
+            fetcherThread.join();
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("MatchSequenceIngestionEngine stopped at checkpoint match_seq_num: {}, stats: {}", checkpointMatchSeqNum.get(), getStats());
+    }
+
+    public synchronized void watchAccount(long accountId) {
+        LongHashSet accountIds = LongHashSet.copyOf(watchedAccountIds);
+        if (accountIds.add(toAccountId(accountId)))
+            watchedAccountIds = accountIds;
+    }
+
+    public synchronized void unwatchAccount(long accountId) {
+        LongHashSet accountIds = LongHashSet.copyOf(watchedAccountIds);
+        if (accountIds.remove(toAccountId(accountId)))
+            watchedAccountIds = accountIds;
+    }
+
+    public IngestionStats getStats() {
+        long elapsedNanos = running ? System.nanoTime() - startedAtNanos : 0;
+        long scanned = matchesScanned.sum();
+        return new IngestionStats(
+                running,
+                nextMatchSeqNum.get(),
+                checkpointMatchSeqNum.get(),
+                pagesFetched.sum(),
+                scanned,
+                matchesMatched.sum(),
+                matchesWritten.sum(),
+                fetchErrors.sum(),
+                pageQueue.size(),
+                TimeUnit.NANOSECONDS.toMillis(backpressureNanos.sum()),
+                elapsedNanos > 0 ? scanned * 1e9 / elapsedNanos : 0);
+    }
+
+    /**
+     * @param nextMatchSeqNum        next sequence number the fetcher will request
+     * @param checkpointMatchSeqNum  next sequence number after the last persisted batch
+     * @param queuedPages            pages fetched but not yet processed by the writer
+     * @param backpressureMillis     total time the fetcher was blocked on a full queue
+     */
+    public record IngestionStats(boolean running, long nextMatchSeqNum, long checkpointMatchSeqNum, long pagesFetched,
+                                 long matchesScanned, long matchesMatched, long matchesWritten, long fetchErrors,
+                                 int queuedPages, long backpressureMillis, double matchesScannedPerSecond) {
+    }
+
+    private record FetchedPage(List<MatchDetailsDto> matches, long nextMatchSeqNum) {
+    }
+
+    private void fetchLoop() {
+        long errorBackoffMillis = 0;
+        try {
+            while (running) {
+                long startAtMatchSeqNum = nextMatchSeqNum.get();
+                Optional<MatchSequencePage> pageOpt = steamWebApiQueryService.getMatchHistoryBySequenceNumResult(
+                        Optional.of(startAtMatchSeqNum), Optional.of(matchesPerPage), MatchSequencePage.class);
+
+                if (pageOpt.isEmpty() || pageOpt.get().status() != MatchSequencePage.STATUS_OK) {
+                    fetchErrors.increment();
+                    errorBackoffMillis = Math.min(maxErrorBackoffMillis, Math.max(1_000, errorBackoffMillis * 2));
+                    log.warn("MatchSequenceIngestionEngine: fetch failed at match_seq_num: {} ({}), retrying in {} ms", startAtMatchSeqNum,
+                            pageOpt.map(MatchSequencePage::statusDetail).orElse("no response"), errorBackoffMillis);
+                    TimeUnit.MILLISECONDS.sleep(errorBackoffMillis);
+                    continue;
+                }
+                errorBackoffMillis = 0;
+
+                List<MatchDetailsDto> matches = pageOpt.get().matches() == null ? List.of() : pageOpt.get().matches();
+                if (!matches.isEmpty()) {
+                    long lastMatchSeqNum = startAtMatchSeqNum;
+                    for (MatchDetailsDto match : matches)
+                        lastMatchSeqNum = Math.max(lastMatchSeqNum, match.getMatch_seq_num());
+                    nextMatchSeqNum.set(lastMatchSeqNum + 1);
+                    pagesFetched.increment();
+                    matchesScanned.add(matches.size());
+
+                    long enqueueStartNanos = System.nanoTime();
+                    pageQueue.put(new FetchedPage(matches, lastMatchSeqNum + 1));
+                    backpressureNanos.add(System.nanoTime() - enqueueStartNanos);
+                }
+
+                //caught up with the newest matches
+                if (matches.size() < matchesPerPage)
+                    TimeUnit.MILLISECONDS.sleep(idlePollMillis);
+            }
+        } catch (InterruptedException e) {
+            log.debug("MatchSequenceIngestionEngine fetcher interrupted");
+        }
+    }
+
+    private void writeLoop() {
+        List<MatchDetailsDto> batch = new ArrayList<>(batchSize);
+        long pendingCheckpoint = checkpointMatchSeqNum.get();
+        int pagesSinceFlush = 0;
+        long writeErrorBackoffMillis = 0;
+        try {
+            while (running || !pageQueue.isEmpty()) {
+                FetchedPage page = pageQueue.poll(1, TimeUnit.SECONDS);
+                if (page != null) {
+                    LongHashSet accountIds = watchedAccountIds;
+                    for (MatchDetailsDto match : page.matches()) {
+                        if (isPlayedByWatchedAccount(match, accountIds)) {
+                            batch.add(match);
+                            matchesMatched.increment();
+                        }
+                    }
+                    pendingCheckpoint = page.nextMatchSeqNum();
+                    pagesSinceFlush++;
+                }
+
+                boolean idle = page == null && pendingCheckpoint != checkpointMatchSeqNum.get();
+                if (batch.size() >= batchSize || pagesSinceFlush >= checkpointEveryPages || idle) {
+                    if (flush(batch, pendingCheckpoint)) {
+                        writeErrorBackoffMillis = 0;
+                    } else {
+                        writeErrorBackoffMillis = Math.min(maxErrorBackoffMillis, Math.max(1_000, writeErrorBackoffMillis * 2));
+                        log.warn("MatchSequenceIngestionEngine: {} matches not written, retrying in {} ms", batch.size(), writeErrorBackoffMillis);
+                        TimeUnit.MILLISECONDS.sleep(writeErrorBackoffMillis);
+                    }
+                    pagesSinceFlush = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("MatchSequenceIngestionEngine writer failed, last checkpoint match_seq_num: {}", checkpointMatchSeqNum.get(), e);
+            running = false;
+            fetcherThread.interrupt();
+            return;
+        }
+        if (!flush(batch, pendingCheckpoint))
+            log.error("MatchSequenceIngestionEngine: {} matches not written at shutdown, checkpoint kept at match_seq_num: {}",
+                    batch.size(), checkpointMatchSeqNum.get());
+    }
+
+    /**
+     * Writes the batch and then advances the checkpoint. Matches the storage failed to write are left in the batch.
+     *
+     * @return false if some matches were not written, the checkpoint is left unchanged then.
+     */
+    private boolean flush(List<MatchDetailsDto> batch, long checkpoint) {
+        if (!batch.isEmpty()) {
+            batch.forEach(match -> cacheForMatchDetailsAPI.put(String.valueOf(match.getMatch_id()), match));
+            if (matchDetailsDao.isDataSourceEnabled()) {
+                try {
+                    matchDetailsDao.saveAllSynchronously(batch);
+                } catch (MatchDetailsSaveException e) {
+                    log.error("MatchSequenceIngestionEngine: error occurred while writing {} matches, {}", batch.size(), e.getMessage());
+                    int batchSizeBefore = batch.size();
+                    batch.removeIf(match -> !e.getFailedMatchIds().contains(match.getMatch_id()));
+                    matchesWritten.add(batchSizeBefore - batch.size());
+                    return false;
+                }
+                matchesWritten.add(batch.size());
+            }
+            batch.clear();
+        }
+        if (checkpoint != checkpointMatchSeqNum.get()) {
+            writeCheckpoint(checkpoint);
+            checkpointMatchSeqNum.set(checkpoint);
+        }
+        return true;
+    }
+
+    private static boolean isPlayedByWatchedAccount(MatchDetailsDto match, LongHashSet accountIds) {
+        if (match.getPlayers() == null)
+            return false;
+        for (PlayersDto player : match.getPlayers()) {
+            if (accountIds.contains(player.getAccount_id()))
+                return true;
+        }
+        return false;
+    }
+
+    private static long toAccountId(long accountIdOrSteamId) {
+        return accountIdOrSteamId >= STEAM_ID_64_BASE ? accountIdOrSteamId - STEAM_ID_64_BASE : accountIdOrSteamId;
+    }
+
+    private Optional<Long> readCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile))
+            return Optional.empty();
+        try {
+            return Optional.of(Long.parseLong(Files.readString(checkpointFile, StandardCharsets.UTF_8).trim()));
+        } catch (IOException | NumberFormatException e) {
+            log.error("Error occurred while reading ingestion checkpoint: {}", checkpointFile, e);
+            return Optional.empty();
+        }
+    }
+
+    private void writeCheckpoint(long matchSeqNum) {
+        if (checkpointFile == null)
+            return;
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            Path tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(tempFile, Long.toString(matchSeqNum), StandardCharsets.UTF_8);
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error occurred while writing ingestion checkpoint: {}", checkpointFile, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.kv.ingest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+
+import java.util.List;
+
+/**
+ * "result" object of GetMatchHistoryBySequenceNum bound with the full match details of every match
+ * (MatchHistoryDto keeps only the match summary).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record MatchSequencePage(int status, String statusDetail, List<MatchDetailsDto> matches) {
+
+    static final int STATUS_OK = 1;
+}
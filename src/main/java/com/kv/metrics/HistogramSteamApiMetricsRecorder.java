@@ -0,0 +1,44 @@
+package com.kv.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Default in-process {@link SteamApiMetricsRecorder}: one {@link LatencyHistogram} per endpoint and status class,
+ * all pre-allocated so recording is a pair of array reads.
+ */
+public class HistogramSteamApiMetricsRecorder implements SteamApiMetricsRecorder {
+
+    private final LatencyHistogram[][] histograms = new LatencyHistogram[SteamEndpoint.values().length][StatusClass.values().length];
+
+    public HistogramSteamApiMetricsRecorder() {
+        for (LatencyHistogram[] endpointHistograms : histograms) {
+            for (int i = 0; i < endpointHistograms.length; i++)
+                endpointHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void record(SteamEndpoint endpoint, StatusClass statusClass, long durationNanos) {
+        histograms[endpoint.ordinal()][statusClass.ordinal()].recordNanos(durationNanos);
+    }
+
+    public LatencyHistogram getHistogram(SteamEndpoint endpoint, StatusClass statusClass) {
+        return histograms[endpoint.ordinal()][statusClass.ordinal()];
+    }
+
+    /**
+     * @return snapshots of every endpoint/status class pair which has seen at least one request.
+     */
+    public Map<SteamEndpoint, Map<StatusClass, LatencyHistogram.Snapshot>> snapshot() {
+        Map<SteamEndpoint, Map<StatusClass, LatencyHistogram.Snapshot>> snapshot = new EnumMap<>(SteamEndpoint.class);
+        for (SteamEndpoint endpoint : SteamEndpoint.values()) {
+            for (StatusClass statusClass : StatusClass.values()) {
+                LatencyHistogram histogram = getHistogram(endpoint, statusClass);
+                if (histogram.getCount() > 0)
+                    snapshot.computeIfAbsent(endpoint, key -> new EnumMap<>(StatusClass.class)).put(statusClass, histogram.snapshot());
+            }
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,92 @@
+package com.kv.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *     Lock-free, fixed memory latency histogram with HdrHistogram style log-linear buckets: values are recorded in
+ *     microseconds, every power of two range is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets which bounds the
+ *     relative error of reported percentiles to ~3%. Values above ~19 hours are clamped into the last bucket.
+ * </p>
+ * Recording is a couple of bit operations plus an atomic increment, no allocation.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_TRACKABLE_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(long durationNanos) {
+        long micros = Math.min(Math.max(0, durationNanos / 1_000), MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * @param percentile in range (0, 100], ex: 99.9
+     * @return upper bound (in microseconds) of the bucket holding the given percentile, 0 if nothing was recorded.
+     */
+    public long getValueAtPercentileMicros(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            count += counts.get(i);
+        if (count == 0)
+            return 0;
+
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= targetCount)
+                return Math.min(highestValueInBucket(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    public Snapshot snapshot() {
+        long count = totalCount.sum();
+        return new Snapshot(
+                count,
+                count == 0 ? 0 : totalMicros.sum() / count,
+                getValueAtPercentileMicros(50),
+                getValueAtPercentileMicros(90),
+                getValueAtPercentileMicros(99),
+                getValueAtPercentileMicros(99.9),
+                maxMicros.get());
+    }
+
+    public record Snapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros, long p999Micros, long maxMicros) {
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT)
+            return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)); // in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + (subBucket - SUB_BUCKET_COUNT);
+    }
+
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int exponent = index / SUB_BUCKET_COUNT - 1 + SUB_BUCKET_BITS;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
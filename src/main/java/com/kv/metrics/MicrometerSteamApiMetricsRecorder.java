@@ -0,0 +1,35 @@
+package com.kv.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes Steam Web API call latencies to Micrometer as the {@value #METRIC_NAME} timer tagged by endpoint and status.
+ * Timers are registered up front so the recording path never looks up or builds meter ids.
+ */
+public class MicrometerSteamApiMetricsRecorder implements SteamApiMetricsRecorder {
+
+    static final String METRIC_NAME = "steam.webapi.requests";
+
+    private final Timer[][] timers = new Timer[SteamEndpoint.values().length][StatusClass.values().length];
+
+    public MicrometerSteamApiMetricsRecorder(MeterRegistry meterRegistry) {
+        for (SteamEndpoint endpoint : SteamEndpoint.values()) {
+            for (StatusClass statusClass : StatusClass.values()) {
+                timers[endpoint.ordinal()][statusClass.ordinal()] = Timer.builder(METRIC_NAME)
+                        .description("Outbound Steam Web API request latency")
+                        .tag("endpoint", endpoint.getTagValue())
+                        .tag("status", statusClass.getTagValue())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    @Override
+    public void record(SteamEndpoint endpoint, StatusClass statusClass, long durationNanos) {
+        timers[endpoint.ordinal()][statusClass.ordinal()].record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,32 @@
+package com.kv.metrics;
+
+/**
+ * Outcome class of an upstream call, {@link #IO_ERROR} when no HTTP response was received at all.
+ */
+public enum StatusClass {
+    SUCCESS("2xx"),
+    REDIRECTION("3xx"),
+    CLIENT_ERROR("4xx"),
+    SERVER_ERROR("5xx"),
+    IO_ERROR("io_error");
+
+    private final String tagValue;
+
+    StatusClass(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+
+    public static StatusClass of(int httpStatusCode) {
+        return switch (httpStatusCode / 100) {
+            case 2 -> SUCCESS;
+            case 3 -> REDIRECTION;
+            case 4 -> CLIENT_ERROR;
+            case 5 -> SERVER_ERROR;
+            default -> IO_ERROR;
+        };
+    }
+}
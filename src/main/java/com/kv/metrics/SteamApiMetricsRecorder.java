@@ -0,0 +1,12 @@
+package com.kv.metrics;
+
+/**
+ * Sink for per-request Steam Web API metrics. Implementations are called on every outbound request and must not
+ * allocate or format strings on the recording path.
+ */
+public interface SteamApiMetricsRecorder {
+
+    SteamApiMetricsRecorder NO_OP = (endpoint, statusClass, durationNanos) -> {};
+
+    void record(SteamEndpoint endpoint, StatusClass statusClass, long durationNanos);
+}
@@ -0,0 +1,38 @@
+package com.kv.metrics;
+
+/**
+ * Upstream endpoints tracked by {@link SteamApiMetricsRecorder}.
+ */
+public enum SteamEndpoint {
+    GET_MATCH_HISTORY_BY_SEQUENCE_NUM("GetMatchHistoryBySequenceNum"),
+    GET_MATCH_HISTORY("GetMatchHistory"),
+    GET_MATCH_DETAILS("GetMatchDetails"),
+    HERO_LIST("herolist"),
+    OTHER("other");
+
+    private static final SteamEndpoint[] KNOWN_ENDPOINTS = {GET_MATCH_HISTORY_BY_SEQUENCE_NUM, GET_MATCH_HISTORY, GET_MATCH_DETAILS, HERO_LIST};
+
+    private final String tagValue;
+
+    SteamEndpoint(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+
+    /**
+     * Resolves the endpoint from a request path by plain substring search (no regex, no allocation).
+     * "GetMatchHistoryBySequenceNum" is checked before its "GetMatchHistory" prefix.
+     */
+    public static SteamEndpoint fromPath(String path) {
+        if (path != null) {
+            for (SteamEndpoint endpoint : KNOWN_ENDPOINTS) {
+                if (path.contains(endpoint.tagValue))
+                    return endpoint;
+            }
+        }
+        return OTHER;
+    }
+}
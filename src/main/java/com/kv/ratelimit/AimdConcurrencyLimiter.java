@@ -0,0 +1,194 @@
+package com.kv.ratelimit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Adaptive in-flight request limit driven by AIMD (additive increase, multiplicative decrease), the same control
+ *     loop TCP uses for its congestion window: every successful response grows the limit by {@code 1 / limit}
+ *     (~ +1 per round of requests), every throttled response (429 / 503) multiplies it by {@code backoffRatio}.
+ *     Decreases are applied at most once per {@code decreaseCooldownNanos} so one burst of rejected in-flight
+ *     requests is a single congestion signal and not a collapse to the minimum.
+ * </p>
+ * Acquire / release are CAS based; a lock is only taken by callers which actually have to queue for a slot.
+ * Asynchronous callers ({@link #acquireAsync(long)}) queue without holding any thread and are handed freed slots in
+ * arrival order.
+ */
+public class AimdConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long decreaseCooldownNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecreaseNanos;
+
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition slotReleased = waitLock.newCondition();
+    private final ConcurrentLinkedQueue<CompletableFuture<Boolean>> asyncWaiters = new ConcurrentLinkedQueue<>();
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long decreaseCooldownNanos) {
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("Invalid limit range: [" + minLimit + ", " + maxLimit + "]");
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1): " + backoffRatio);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.decreaseCooldownNanos = decreaseCooldownNanos;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(Math.clamp(initialLimit, minLimit, maxLimit)));
+        this.lastDecreaseNanos = new AtomicLong(System.nanoTime() - decreaseCooldownNanos);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit())
+                return false;
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * @return true once a slot was taken, false if none freed up within given timeout.
+     */
+    public boolean acquire(long timeoutNanos) throws InterruptedException {
+        if (tryAcquire())
+            return true;
+        if (timeoutNanos <= 0)
+            return false;
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        waitLock.lock();
+        waiters.incrementAndGet();
+        try {
+            //re-checked after registering as a waiter, so a release in between can't be missed
+            while (!tryAcquire()) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0)
+                    return false;
+                slotReleased.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            waiters.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking {@link #acquire(long)}.
+     *
+     * @return future completed with true once a slot was taken, false if none freed up within given timeout.
+     */
+    public CompletableFuture<Boolean> acquireAsync(long timeoutNanos) {
+        if (tryAcquire())
+            return CompletableFuture.completedFuture(true);
+        if (timeoutNanos <= 0)
+            return CompletableFuture.completedFuture(false);
+
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        asyncWaiters.add(waiter);
+        waiter.completeOnTimeout(false, timeoutNanos, TimeUnit.NANOSECONDS)
+                .thenRun(() -> asyncWaiters.remove(waiter));
+        //a slot released between the failed tryAcquire and queueing must not be missed
+        signalWaiters();
+        return waiter;
+    }
+
+    /**
+     * Frees the slot and feeds the outcome of the request into the limit.
+     *
+     * @param throttled true when upstream pushed back (429 / 503)
+     */
+    public void release(boolean throttled) {
+        if (throttled)
+            decreaseLimit();
+        else
+            increaseLimit();
+        cancel();
+    }
+
+    /**
+     * Frees the slot without feeding any outcome into the limit, for slots given up before the request was sent.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+        signalWaiters();
+    }
+
+    private void signalWaiters() {
+        if (!asyncWaiters.isEmpty())
+            handOverToAsyncWaiters();
+        if (waiters.get() > 0) {
+            waitLock.lock();
+            try {
+                slotReleased.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void handOverToAsyncWaiters() {
+        CompletableFuture<Boolean> waiter;
+        while ((waiter = asyncWaiters.peek()) != null) {
+            if (waiter.isDone()) {
+                //timed out
+                asyncWaiters.remove(waiter);
+                continue;
+            }
+            if (!tryAcquire())
+                return;
+            if (asyncWaiters.remove(waiter) && waiter.complete(true))
+                continue;
+            //the waiter timed out or was served by a concurrent hand over meanwhile, give the slot back
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void increaseLimit() {
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            if (limit >= maxLimit)
+                return;
+            double increasedLimit = Math.min(maxLimit, limit + 1.0 / limit);
+            if (limitBits.compareAndSet(bits, Double.doubleToRawLongBits(increasedLimit)))
+                return;
+        }
+    }
+
+    private void decreaseLimit() {
+        long now = System.nanoTime();
+        long lastDecrease = lastDecreaseNanos.get();
+        if (now - lastDecrease < decreaseCooldownNanos || !lastDecreaseNanos.compareAndSet(lastDecrease, now))
+            return;
+
+        while (true) {
+            long bits = limitBits.get();
+            double decreasedLimit = Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio);
+            if (limitBits.compareAndSet(bits, Double.doubleToRawLongBits(decreasedLimit)))
+                return;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.kv.ratelimit;
+
+import com.kv.constants.SteamWebApiKeys;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *     Spreads Steam Web API requests over all configured API keys using weighted round-robin. Every key has its own
+ *     quota in {@link SteamApiRateLimiter}, so aggregate throughput grows with the number of keys.
+ * </p>
+ * <p>
+ *     When a key gets throttled (429 / 503, see {@link SteamApiRateLimiter#isThrottled(int)}) it is taken out of rotation for a penalty period. The period doubles with
+ *     each consecutive throttle, up to {@code max-penalty-ms}, and resets on the first success. If every key is
+ *     penalized, the key whose penalty ends first is used.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.steam.api-keys -> comma separated keys, optionally weighted as {@code key:weight}
+ *     (default {@link SteamWebApiKeys#PRIMARY_STEAM_ACCOUNT_WEB_API_KEY})</li>
+ *     <li>kv.steam.api-key-pool.base-penalty-ms -> penalty after the first throttle (default 1000)</li>
+ *     <li>kv.steam.api-key-pool.max-penalty-ms -> penalty cap (default 60000)</li>
+ * </ul>
+ */
+@Component
+@Log4j2
+public class SteamApiKeyPool {
+
+    private static final int MAX_PENALTY_SHIFT = 16;
+
+    private final long basePenaltyNanos;
+    private final long maxPenaltyNanos;
+
+    private final Map<String, ApiKeyState> keyStates;
+    //each key appears `weight` times, interleaved
+    private final ApiKeyState[] rotation;
+    private final AtomicLong rotationCounter = new AtomicLong();
+
+    public SteamApiKeyPool(Environment environment) {
+        this.basePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("kv.steam.api-key-pool.base-penalty-ms", Long.class, 1_000L));
+        this.maxPenaltyNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("kv.steam.api-key-pool.max-penalty-ms", Long.class, 60_000L));
+
+        String[] configuredKeys = environment.getProperty("kv.steam.api-keys", String[].class,
+                new String[]{SteamWebApiKeys.PRIMARY_STEAM_ACCOUNT_WEB_API_KEY});
+        Map<String, ApiKeyState> keyStates = new LinkedHashMap<>();
+        for (String configuredKey : configuredKeys) {
+            String trimmedKey = configuredKey.trim();
+            if (trimmedKey.isEmpty())
+                continue;
+            int weightSeparator = trimmedKey.lastIndexOf(':');
+            String apiKey = weightSeparator < 0 ? trimmedKey : trimmedKey.substring(0, weightSeparator);
+            int weight = weightSeparator < 0 ? 1 : Integer.parseInt(trimmedKey.substring(weightSeparator + 1));
+            if (weight < 1)
+                throw new IllegalArgumentException("Steam Web API key weight must be at least 1: " + weight);
+            keyStates.putIfAbsent(apiKey, new ApiKeyState(apiKey, weight, keyStates.size()));
+        }
+        if (keyStates.isEmpty())
+            throw new IllegalStateException("No Steam Web API key configured (kv.steam.api-keys)");
+
+        this.keyStates = Collections.unmodifiableMap(keyStates);
+        this.rotation = buildRotation(keyStates.values());
+        log.info("SteamApiKeyPool configured with {} api key(s), rotation size: {}", keyStates.size(), rotation.length);
+    }
+
+    /**
+     * @return the next API key to use, skipping keys currently penalized for being throttled.
+     */
+    public String nextKey() {
+        long now = System.nanoTime();
+        ApiKeyState leastPenalized = null;
+        //every attempt takes a fresh rotation slot, so the load of a penalized key is shared by all others by weight
+        for (int i = 0; i < rotation.length; i++) {
+            ApiKeyState candidate = rotation[Math.floorMod(rotationCounter.getAndIncrement(), rotation.length)];
+            long penaltyUntil = candidate.penaltyUntilNanos.get();
+            if (penaltyUntil - now <= 0) {
+                candidate.requestCount.increment();
+                return candidate.apiKey;
+            }
+            if (leastPenalized == null || penaltyUntil - leastPenalized.penaltyUntilNanos.get() < 0)
+                leastPenalized = candidate;
+        }
+        leastPenalized.requestCount.increment();
+        return leastPenalized.apiKey;
+    }
+
+    /**
+     * Feeds the outcome of a request sent with given key back into the pool. Unknown keys are ignored.
+     */
+    public void onResponse(String apiKey, int httpStatusCode) {
+        ApiKeyState keyState = keyStates.get(apiKey);
+        if (keyState == null)
+            return;
+
+        if (SteamApiRateLimiter.isThrottled(httpStatusCode)) {
+            int consecutiveThrottles = keyState.consecutiveThrottles.incrementAndGet();
+            long penaltyNanos = Math.min(maxPenaltyNanos, basePenaltyNanos << Math.min(consecutiveThrottles - 1, MAX_PENALTY_SHIFT));
+            keyState.penaltyUntilNanos.set(System.nanoTime() + penaltyNanos);
+            keyState.throttledCount.increment();
+            log.warn("SteamApiKeyPool: api key #{} throttled with HttpStatusCode: {}, out of rotation for {} ms",
+                    keyState.index, httpStatusCode, TimeUnit.NANOSECONDS.toMillis(penaltyNanos));
+        } else if (keyState.consecutiveThrottles.get() != 0) {
+            keyState.consecutiveThrottles.set(0);
+        }
+    }
+
+    public int size() {
+        return keyStates.size();
+    }
+
+    /**
+     * @return per key stats in configured order, keys are identified by their position only.
+     */
+    public List<KeyStats> getStats() {
+        long now = System.nanoTime();
+        List<KeyStats> stats = new ArrayList<>(keyStates.size());
+        for (ApiKeyState keyState : keyStates.values()) {
+            stats.add(new KeyStats(keyState.index, keyState.weight, keyState.requestCount.sum(), keyState.throttledCount.sum(),
+                    Math.max(0, TimeUnit.NANOSECONDS.toMillis(keyState.penaltyUntilNanos.get() - now))));
+        }
+        return stats;
+    }
+
+    public record KeyStats(int index, int weight, long requestCount, long throttledCount, long remainingPenaltyMillis) {
+    }
+
+    private static ApiKeyState[] buildRotation(Collection<ApiKeyState> keys) {
+        int maxWeight = keys.stream().mapToInt(keyState -> keyState.weight).max().orElse(1);
+        List<ApiKeyState> rotation = new ArrayList<>();
+        for (int round = 0; round < maxWeight; round++) {
+            for (ApiKeyState keyState : keys) {
+                if (keyState.weight > round)
+                    rotation.add(keyState);
+            }
+        }
+        return rotation.toArray(new ApiKeyState[0]);
+    }
+
+    private static final class ApiKeyState {
+
+        private final String apiKey;
+        private final int weight;
+        private final int index;
+
+        private final AtomicLong penaltyUntilNanos = new AtomicLong(System.nanoTime());
+        private final AtomicInteger consecutiveThrottles = new AtomicInteger();
+        private final LongAdder requestCount = new LongAdder();
+        private final LongAdder throttledCount = new LongAdder();
+
+        private ApiKeyState(String apiKey, int weight, int index) {
+            this.apiKey = apiKey;
+            this.weight = weight;
+            this.index = index;
+        }
+    }
+}
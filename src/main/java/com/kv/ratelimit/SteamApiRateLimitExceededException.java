@@ -0,0 +1,14 @@
+package com.kv.ratelimit;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown (through the RestTemplate call) when a Steam Web API request could not get a rate limit permit within
+ * {@code kv.steam.rate-limit.max-wait-ms}; the request was never sent.
+ */
+public class SteamApiRateLimitExceededException extends RestClientException {
+
+    public SteamApiRateLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,174 @@
+package com.kv.ratelimit;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Shared client-side throttle for outbound Steam Web API calls, applied by
+ *     {@link com.kv.config.RestTemplateInterceptor} (and the non-blocking {@link com.kv.client.SteamWebApiClient})
+ *     to every request carrying an API key. Each key gets its own
+ *     {@link TokenBucket} (requests per second budget) and {@link AimdConcurrencyLimiter} (in-flight requests,
+ *     shrunk on 429 / 503 responses and grown back on successes), so sustained throughput settles just under
+ *     the upstream limit instead of oscillating between bursts and 429 storms.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.steam.rate-limit.enabled -> false removes the limiter (default true)</li>
+ *     <li>kv.steam.rate-limit.requests-per-second -> request budget per API key (default 10)</li>
+ *     <li>kv.steam.rate-limit.burst-size -> requests allowed back to back before spacing kicks in (default 10)</li>
+ *     <li>kv.steam.rate-limit.max-wait-ms -> how long a caller queues for a permit, 0 fails fast (default 30000)</li>
+ *     <li>kv.steam.rate-limit.concurrency.initial / min / max -> in-flight requests per API key (default 8 / 1 / 64)</li>
+ *     <li>kv.steam.rate-limit.concurrency.backoff-ratio -> multiplicative decrease on 429 / 503 (default 0.5)</li>
+ *     <li>kv.steam.rate-limit.concurrency.decrease-cooldown-ms -> minimum gap between two decreases (default 1000)</li>
+ * </ul>
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(name = "kv.steam.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class SteamApiRateLimiter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final double requestsPerSecond;
+    private final int burstSize;
+    private final long maxWaitNanos;
+    private final int initialConcurrency;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double backoffRatio;
+    private final long decreaseCooldownNanos;
+
+    private final Map<String, KeyLimiter> limitersByApiKey = new ConcurrentHashMap<>();
+
+    public SteamApiRateLimiter(Environment environment) {
+        this.requestsPerSecond = environment.getProperty("kv.steam.rate-limit.requests-per-second", Double.class, 10.0);
+        this.burstSize = environment.getProperty("kv.steam.rate-limit.burst-size", Integer.class, 10);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("kv.steam.rate-limit.max-wait-ms", Long.class, 30_000L));
+        this.initialConcurrency = environment.getProperty("kv.steam.rate-limit.concurrency.initial", Integer.class, 8);
+        this.minConcurrency = environment.getProperty("kv.steam.rate-limit.concurrency.min", Integer.class, 1);
+        this.maxConcurrency = environment.getProperty("kv.steam.rate-limit.concurrency.max", Integer.class, 64);
+        this.backoffRatio = environment.getProperty("kv.steam.rate-limit.concurrency.backoff-ratio", Double.class, 0.5);
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(
+                environment.getProperty("kv.steam.rate-limit.concurrency.decrease-cooldown-ms", Long.class, 1_000L));
+
+        log.info("SteamApiRateLimiter requestsPerSecond: {}, burstSize: {}, maxWaitMs: {}, concurrency: {} [{}, {}]",
+                requestsPerSecond, burstSize, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), initialConcurrency, minConcurrency, maxConcurrency);
+    }
+
+    /**
+     * Blocks (up to {@code kv.steam.rate-limit.max-wait-ms}) until both a concurrency slot and a rate permit for given
+     * API key are available. The returned permit must be completed with {@link Permit#release(int)} or
+     * {@link Permit#releaseOnIoError()}.
+     *
+     * @throws SteamApiRateLimitExceededException when no permit was granted in time
+     */
+    public Permit acquire(String apiKey) {
+        KeyLimiter keyLimiter = keyLimiter(apiKey);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        try {
+            if (!keyLimiter.concurrencyLimiter().acquire(maxWaitNanos))
+                throw new SteamApiRateLimitExceededException("Steam Web API concurrency limit of "
+                        + keyLimiter.concurrencyLimiter().getLimit() + " in-flight requests reached");
+
+            long waitNanos = keyLimiter.tokenBucket().reserve(Math.max(0, deadline - System.nanoTime()));
+            if (waitNanos < 0) {
+                keyLimiter.concurrencyLimiter().cancel();
+                throw new SteamApiRateLimitExceededException("Steam Web API rate limit of " + requestsPerSecond + " requests per second reached");
+            }
+            if (waitNanos > 0)
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SteamApiRateLimitExceededException("Interrupted while waiting for a Steam Web API rate limit permit");
+        }
+        return new Permit(keyLimiter.concurrencyLimiter());
+    }
+
+    /**
+     * Non-blocking {@link #acquire(String)}: no thread is held while queueing for a concurrency slot or waiting for the
+     * rate permit.
+     *
+     * @return future completed with the permit, or failed with {@link SteamApiRateLimitExceededException}
+     */
+    public CompletableFuture<Permit> acquireAsync(String apiKey) {
+        KeyLimiter keyLimiter = keyLimiter(apiKey);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        return keyLimiter.concurrencyLimiter().acquireAsync(maxWaitNanos).thenCompose(acquired -> {
+            if (!acquired)
+                throw new SteamApiRateLimitExceededException("Steam Web API concurrency limit of "
+                        + keyLimiter.concurrencyLimiter().getLimit() + " in-flight requests reached");
+
+            long waitNanos = keyLimiter.tokenBucket().reserve(Math.max(0, deadline - System.nanoTime()));
+            if (waitNanos < 0) {
+                keyLimiter.concurrencyLimiter().cancel();
+                throw new SteamApiRateLimitExceededException("Steam Web API rate limit of " + requestsPerSecond + " requests per second reached");
+            }
+            Permit permit = new Permit(keyLimiter.concurrencyLimiter());
+            if (waitNanos == 0)
+                return CompletableFuture.completedFuture(permit);
+            //completed by the JDK's delay scheduler thread, the caller's continuation only sends the request
+            return CompletableFuture.supplyAsync(() -> permit, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, Runnable::run));
+        });
+    }
+
+    /**
+     * @return current adaptive in-flight limit for given API key, or -1 if the key was not used yet.
+     */
+    public int getConcurrencyLimit(String apiKey) {
+        KeyLimiter keyLimiter = limitersByApiKey.get(apiKey);
+        return keyLimiter == null ? -1 : keyLimiter.concurrencyLimiter().getLimit();
+    }
+
+    /**
+     * Only 429 and 503 mean steam is shedding load. Other 5xx are per request failures (ex: GetMatchDetails answers
+     * 500 for every request), backing off on them would starve healthy endpoints sharing the key.
+     */
+    public static boolean isThrottled(int httpStatusCode) {
+        return httpStatusCode == TOO_MANY_REQUESTS || httpStatusCode == SERVICE_UNAVAILABLE;
+    }
+
+    private KeyLimiter keyLimiter(String apiKey) {
+        return limitersByApiKey.computeIfAbsent(apiKey, key -> new KeyLimiter(
+                new TokenBucket(requestsPerSecond, burstSize),
+                new AimdConcurrencyLimiter(initialConcurrency, minConcurrency, maxConcurrency, backoffRatio, decreaseCooldownNanos)));
+    }
+
+    private record KeyLimiter(TokenBucket tokenBucket, AimdConcurrencyLimiter concurrencyLimiter) {
+    }
+
+    public static final class Permit {
+
+        private final AimdConcurrencyLimiter concurrencyLimiter;
+
+        private Permit(AimdConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+        }
+
+        public void release(int httpStatusCode) {
+            concurrencyLimiter.release(isThrottled(httpStatusCode));
+        }
+
+        /**
+         * Connection failures / timeouts are treated as overload as well.
+         */
+        public void releaseOnIoError() {
+            concurrencyLimiter.release(true);
+        }
+
+        /**
+         * Frees the slot of a request given up before it was sent, without feeding any outcome into the limit.
+         */
+        public void cancel() {
+            concurrencyLimiter.cancel();
+        }
+    }
+}
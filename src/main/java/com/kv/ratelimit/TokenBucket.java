@@ -0,0 +1,57 @@
+package com.kv.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Lock-free token bucket implemented as a GCRA (generic cell rate algorithm): the whole bucket state is a single
+ *     "theoretical arrival time" updated by CAS, no refill thread and no lock.
+ * </p>
+ * Up to {@code burstSize} permits are handed out back to back, after which permits are spaced {@code 1 / permitsPerSecond} apart.
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(double permitsPerSecond, int burstSize) {
+        if (permitsPerSecond <= 0)
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        if (burstSize < 1)
+            throw new IllegalArgumentException("burstSize must be at least 1: " + burstSize);
+
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * (burstSize - 1);
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserves the next permit if it becomes available within given wait.
+     *
+     * @return nanos the caller has to wait before using the reserved permit (0 = immediately),
+     *         or -1 if no permit is available within {@code maxWaitNanos} (nothing is reserved then).
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long theoreticalArrival = theoreticalArrivalNanos.get();
+            long waitNanos = Math.max(0, theoreticalArrival - burstToleranceNanos - now);
+            if (waitNanos > maxWaitNanos)
+                return -1;
+
+            long nextTheoreticalArrival = Math.max(theoreticalArrival, now) + emissionIntervalNanos;
+            if (theoreticalArrivalNanos.compareAndSet(theoreticalArrival, nextTheoreticalArrival))
+                return waitNanos;
+        }
+    }
+
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    public double getPermitsPerSecond() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / emissionIntervalNanos;
+    }
+}
@@ -1,48 +1,54 @@
 package com.kv.service;
 
-import com.kv.dao.MatchDetailsDaoFileStorageImpl;
+import com.kv.dao.MatchDetailsDao;
 import com.kv.matchdetails.dto.MatchDetailsDto;
 import com.kv.matchdetails.dto.MatchesDto;
+import com.kv.util.MatchTimeIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class CommonUtilityService {
 
-    private static final short FIVE_AND_HALF_HOURS_TIME_IN_SECONDS = 19800;
     @Autowired
-    private MatchDetailsDaoFileStorageImpl matchDetailsDao;
+    private MatchDetailsDao<MatchDetailsDto> matchDetailsDao;
 
     public Object getDataFromDB(Object id) {
-        if(matchDetailsDao.dataSourceEnabled)
+        if(matchDetailsDao.isDataSourceEnabled())
             return matchDetailsDao.findByMatchId(id);
         else
             return null;
     }
 
     public Object saveDataToDB(MatchDetailsDto obj) {
-        if(matchDetailsDao.dataSourceEnabled)
+        if(matchDetailsDao.isDataSourceEnabled())
             return matchDetailsDao.save(obj);
         else
             return null;
     }
 
     public static Set<MatchesDto> getMatchesPlayedInBetween(LocalDate fromDate, LocalDate toDate, Collection<MatchesDto> matchesDtoCollection) {
-        return matchesDtoCollection
-                .stream()
-                .filter(match -> (fromDate.isBefore(LocalDateTime.ofEpochSecond(match.getStart_time(), 0, ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS)).toLocalDate()) || fromDate.isEqual(LocalDateTime.ofEpochSecond(match.getStart_time(), 0, ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS)).toLocalDate())
-                        && (toDate.isAfter(LocalDateTime.ofEpochSecond(match.getStart_time(), 0, ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS)).toLocalDate()) || toDate.isEqual(LocalDateTime.ofEpochSecond(match.getStart_time(), 0, ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS)).toLocalDate()))))
-                .collect(Collectors.toSet());
+        return getMatchesPlayedInBetween(fromDate, toDate, MatchTimeIndex.of(matchesDtoCollection));
+    }
+
+    /**
+     * Same as {@link #getMatchesPlayedInBetween(LocalDate, LocalDate, Collection)} on a prebuilt index, so repeated
+     * range queries over one history cost two binary searches each.
+     */
+    public static Set<MatchesDto> getMatchesPlayedInBetween(LocalDate fromDate, LocalDate toDate, MatchTimeIndex matchTimeIndex) {
+        //Day boundaries as epoch seconds, computed once instead of converting every start_time to an IST date.
+        //Matches exactly as the original filter `after(fromDate) || onDate(fromDate) && !after(toDate)`, i.e. toDate only
+        //bounds matches played on fromDate itself.
+        LocalDate firstIncludedDate = toDate.isBefore(fromDate) ? fromDate.plusDays(1) : fromDate;
+        return new HashSet<>(matchTimeIndex.startedAtOrAfter(MatchTimeIndex.istDayStartEpochSecond(firstIncludedDate)));
     }
 
     public static ZonedDateTime convertToZonedUtc(long dateTimeInEpoch) {
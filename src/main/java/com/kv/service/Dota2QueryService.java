@@ -1,47 +1,117 @@
 package com.kv.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.cache.SingleFlight;
 import com.kv.hero.dto.HeroesDto;
-import com.kv.misc.dto.Container;
+import com.kv.util.HeroRegistry;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+/**
+ * <p>
+ *     Hero list of the dota2.com herolist feed, cached in memory and published atomically (readers always see one complete list).
+ * </p>
+ * <p>
+ *     Only the very first call waits for the feed; once a list is cached it is returned right away and, when older than
+ *     {@code kv.dota2.herolist.ttl-seconds}, refreshed in the background (stale-while-revalidate). Concurrent loads of
+ *     the feed are coalesced into one request. When the feed is unreachable the bundled {@code utils/heroinfo.json}
+ *     (as known to {@link HeroRegistry}) is served, and the feed is retried after {@code kv.dota2.herolist.retry-seconds}.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.dota2.herolist.ttl-seconds -> age after which the list is refreshed in the background (default 21600)</li>
+ *     <li>kv.dota2.herolist.retry-seconds -> retry interval of the feed while serving the bundled list (default 300)</li>
+ * </ul>
+ */
 @Service
+@Log4j2
 public class Dota2QueryService {
 
     private static final String DOTA2_HEROES_LIST_SERVICE_URL = "https://www.dota2.com/datafeed/herolist?language=english";
-
-    private static List<HeroesDto> cachedHeroesListData = null;
+    private static final String HERO_LIST_KEY = "herolist";
+    private static final Executor HERO_LIST_REFRESH_EXECUTOR = task -> Thread.ofVirtual().name("herolist-refresh").start(task);
 
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${kv.dota2.herolist.ttl-seconds:21600}")
+    private long heroListTtlSeconds;
+
+    @Value("${kv.dota2.herolist.retry-seconds:300}")
+    private long heroListRetrySeconds;
+
+    private final SingleFlight<String, CachedHeroList> heroListSingleFlight = new SingleFlight<>();
+
+    private volatile CachedHeroList cachedHeroList;
+
+    /**
+     * @param refreshAtNanos System.nanoTime after which the list is refreshed
+     * @param remote         false for the bundled fallback list
+     */
+    private record CachedHeroList(List<HeroesDto> heroes, long refreshAtNanos, boolean remote) {
+    }
+
     private List<HeroesDto> getDota2HeroesNameList() {
-        List<HeroesDto> list = new ArrayList<>();
-
-        if(cachedHeroesListData != null) {
-            return cachedHeroesListData;
-        } else {
-            ObjectMapper objectMapper = new ObjectMapper();
-            ResponseEntity<Map<String, Object>> responseEntity = restTemplate
-                    .exchange(DOTA2_HEROES_LIST_SERVICE_URL, HttpMethod.GET, null, new ParameterizedTypeReference<>() {});
-            if(responseEntity.hasBody()) {
-                Map<String, Object> result = (Map) responseEntity.getBody().get("result");
-                Map<String, Object> data = (Map) result.get("data");
-                list = objectMapper.convertValue(data.get("heroes"), new TypeReference<>() {
-                });
-                cachedHeroesListData = list;
-            }
+        CachedHeroList heroList = cachedHeroList;
+        if (heroList == null)
+            return heroListSingleFlight.execute(HERO_LIST_KEY, this::loadHeroList).heroes();
+
+        if (System.nanoTime() - heroList.refreshAtNanos() >= 0)
+            heroListSingleFlight.executeAsync(HERO_LIST_KEY, () -> CompletableFuture.supplyAsync(this::loadHeroList, HERO_LIST_REFRESH_EXECUTOR));
+        return heroList.heroes();
+    }
+
+    /**
+     * Fetches the feed and publishes the result, the bundled list if the feed fails and nothing newer is cached yet.
+     */
+    private CachedHeroList loadHeroList() {
+        //a load that completed while this caller waited to enter the single-flight is still fresh
+        CachedHeroList current = cachedHeroList;
+        if (current != null && System.nanoTime() - current.refreshAtNanos() < 0)
+            return current;
+
+        CachedHeroList loaded;
+        try {
+            List<HeroesDto> heroes = fetchHeroList();
+            loaded = new CachedHeroList(List.copyOf(heroes), System.nanoTime() + TimeUnit.SECONDS.toNanos(heroListTtlSeconds), true);
+            //Keep Dota2HeroesUtil lookups in sync with heroes added by newer patches
+            HeroRegistry.refresh(heroes);
+            log.info("Dota2QueryService: loaded {} heroes from herolist feed", heroes.size());
+        } catch (RuntimeException e) {
+            log.error("Error occurred while fetching herolist feed, retrying in {} s: {}", heroListRetrySeconds, e.getMessage());
+            long retryAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(heroListRetrySeconds);
+            //a previously fetched list stays better than the bundled one
+            loaded = current != null && current.remote()
+                    ? new CachedHeroList(current.heroes(), retryAtNanos, true)
+                    : new CachedHeroList(HeroRegistry.getInstance().getHeroes(), retryAtNanos, false);
         }
-        return list;
+        cachedHeroList = loaded;
+        return loaded;
+    }
+
+    private List<HeroesDto> fetchHeroList() {
+        JsonNode response = restTemplate.execute(DOTA2_HEROES_LIST_SERVICE_URL, HttpMethod.GET, null,
+                clientHttpResponse -> objectMapper.readTree(clientHttpResponse.getBody()));
+        JsonNode heroes = response == null ? null : response.path("result").path("data").path("heroes");
+        if (heroes == null || !heroes.isArray() || heroes.isEmpty())
+            throw new IllegalStateException("herolist feed returned no heroes");
+        return objectMapper.convertValue(heroes, new TypeReference<>() {
+        });
     }
 
     public Supplier<List<HeroesDto>> dota2AllHeroesListSupplier = () -> getDota2HeroesNameList();
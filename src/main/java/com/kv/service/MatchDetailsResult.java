@@ -0,0 +1,21 @@
+package com.kv.service;
+
+import com.kv.matchdetails.dto.MatchDetailsDto;
+
+/**
+ * Per match outcome of a batch "GetMatchDetails" call. Exactly one of {@code matchDetails} and {@code error} is set.
+ */
+public record MatchDetailsResult(long matchId, MatchDetailsDto matchDetails, Exception error) {
+
+    public static MatchDetailsResult success(long matchId, MatchDetailsDto matchDetails) {
+        return new MatchDetailsResult(matchId, matchDetails, null);
+    }
+
+    public static MatchDetailsResult failure(long matchId, Exception error) {
+        return new MatchDetailsResult(matchId, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.kv.service;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Steam web api answered a "GetMatchDetails" request (or its GetMatchHistoryBySequenceNum fallback) without the details
+ * of the requested match, ex: an unknown matchId.
+ */
+public class MatchDetailsUnavailableException extends RestClientException {
+
+    public MatchDetailsUnavailableException(String message) {
+        super(message);
+    }
+}
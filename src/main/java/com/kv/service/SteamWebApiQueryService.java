@@ -1,44 +1,52 @@
 package com.kv.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.cache.LocalCache;
+import com.kv.cache.SingleFlight;
+import com.kv.client.Deadline;
+import com.kv.client.SteamApiCircuitOpenException;
+import com.kv.client.SteamWebApiClient;
 import com.kv.constants.Dota2SteamWebApiUrls;
-import com.kv.constants.SteamWebApiKeys;
-import com.kv.dao.MatchDetailsDaoFileStorageImpl;
+import com.kv.dao.AccountMatchHistoryStore;
+import com.kv.dao.MatchDetailsDao;
+import com.kv.dao.MatchDetailsSaveException;
+import com.kv.dao.MatchQuery;
+import com.kv.dao.MatchSecondaryIndex;
 import com.kv.matchdetails.dto.MatchDetailsDto;
 import com.kv.matchdetails.dto.MatchHistoryDto;
 import com.kv.matchdetails.dto.MatchesDto;
-import com.kv.misc.dto.MatchDetailsContainer;
+import com.kv.metrics.SteamEndpoint;
 import com.kv.misc.dto.SteamWebApiResponseContainer;
+import com.kv.ratelimit.SteamApiKeyPool;
+import com.kv.util.MatchTimeIndex;
+import com.kv.util.SteamWebApiResultExtractor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -46,18 +54,51 @@ import java.util.stream.Collectors;
 @Log4j2
 public class SteamWebApiQueryService {
 
+    //Steam Web API transport: non-blocking when the pooled Steam HTTP client is enabled, see SteamWebApiClient
     @Autowired
-    private RestTemplate restTemplate;
+    private SteamWebApiClient steamWebApiClient;
 
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
-    private MatchDetailsDaoFileStorageImpl matchDetailsDaoFileStorage;
+    private MatchDetailsDao<MatchDetailsDto> matchDetailsDaoFileStorage;
+
+    @Autowired
+    private SteamApiKeyPool steamApiKeyPool;
+
+    //absent when kv.datasource.secondary-index.enabled=false
+    @Autowired(required = false)
+    private MatchSecondaryIndex matchSecondaryIndex;
 
     //CacheData
-    private static final Map<String, MatchDetailsDto> cacheForMatchDetailsAPI = new HashMap<>();
+    @Autowired
+    private LocalCache<String, MatchDetailsDto> cacheForMatchDetailsAPI;
+
+    //loads with and without a match_seq_num are kept apart, only the former can use the sequence number fallback
+    private final SingleFlight<MatchDetailsLoadKey, MatchDetailsDto> matchDetailsSingleFlight = new SingleFlight<>();
+
+    @Value("${kv.steam.batch.max-concurrency:8}")
+    private int batchMaxConcurrency;
+
+    @Autowired
+    private AccountMatchHistoryStore accountMatchHistoryStore;
+
+    private final SingleFlight<String, List<MatchesDto>> accountHistorySingleFlight = new SingleFlight<>();
+
+    @Value("${kv.history.sync.matches-requested:25}")
+    private int historySyncMatchesRequested;
+
+    //Deadline budgets shared by every request of one call (fallbacks, pagination), 0 disables
+    @Value("${kv.steam.deadline.match-details-ms:20000}")
+    private long matchDetailsDeadlineMs;
+
+    @Value("${kv.steam.deadline.match-history-ms:60000}")
+    private long matchHistoryDeadlineMs;
 
+
+    private static final int STEAM_MATCH_HISTORY_PAGE_SIZE = 100;
+    private static final int STEAM_MATCH_HISTORY_LIMIT = 500;
     private static final short ONE_HOUR_TIME_IN_SECONDS = 3600;
     private static final short THREE_HOURS_TIME_IN_SECONDS = ONE_HOUR_TIME_IN_SECONDS * 3;
     private static final short FIVE_AND_HALF_HOURS_TIME_IN_SECONDS = 19800;
@@ -68,24 +109,36 @@ public class SteamWebApiQueryService {
      * <p>This function does a rest call to steam web api and provides MatchHistory details for given Dota2 account ID.</p>
      */
     public MatchHistoryDto getMatchHistory(String dota2AccountId, String startAtMatchId, String heroId) {
+        return getMatchHistory(dota2AccountId, startAtMatchId, heroId, null);
+    }
 
-        MatchHistoryDto matchHistoryDto = new MatchHistoryDto();
+    /**
+     * Same as {@link #getMatchHistory(String, String, String)} with an optional page size (matches_requested, max 100).
+     */
+    public MatchHistoryDto getMatchHistory(String dota2AccountId, String startAtMatchId, String heroId, Integer matchesRequested) {
+        return join(getMatchHistoryAsync(dota2AccountId, startAtMatchId, heroId, matchesRequested));
+    }
 
-        String matchHistoryUrl = buildMatchHistoryUrl(dota2AccountId, startAtMatchId, heroId);
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(matchHistoryUrl, HttpMethod.GET, null, new ParameterizedTypeReference<>() {});
+    /**
+     * Asynchronous {@link #getMatchHistory(String, String, String)}.
+     */
+    public CompletableFuture<MatchHistoryDto> getMatchHistoryAsync(String dota2AccountId, String startAtMatchId, String heroId) {
+        return getMatchHistoryAsync(dota2AccountId, startAtMatchId, heroId, null);
+    }
 
-        try {
-            String responseString = null;
-            responseString = objectMapper.writeValueAsString(Objects.requireNonNull(response.getBody()).get("result"));
-            matchHistoryDto = objectMapper.readValue(responseString, MatchHistoryDto.class);
-//            Map<String, Object> map = objectMapper.readValue(responseString, new TypeReference<>() {});
-//            matchHistoryDto = objectMapper.convertValue(map, MatchHistoryDto.class);
-        } catch (JsonProcessingException e) {
-            log.error("Error occurred while converting json response to Java model - {}", e.getMessage());
-            e.printStackTrace();
-        }
+    /**
+     * Asynchronous {@link #getMatchHistory(String, String, String, Integer)}.
+     */
+    public CompletableFuture<MatchHistoryDto> getMatchHistoryAsync(String dota2AccountId, String startAtMatchId, String heroId, Integer matchesRequested) {
+        return getMatchHistoryAsync(dota2AccountId, startAtMatchId, heroId, matchesRequested, Deadline.NONE);
+    }
+
+    private CompletableFuture<MatchHistoryDto> getMatchHistoryAsync(String dota2AccountId, String startAtMatchId, String heroId, Integer matchesRequested, Deadline deadline) {
+        String matchHistoryUrl = buildMatchHistoryUrl(dota2AccountId, startAtMatchId, heroId, matchesRequested);
 
-        return matchHistoryDto;
+        //Response body is streamed straight into MatchHistoryDto, see SteamWebApiResultExtractor
+        return steamWebApiClient.get(matchHistoryUrl, SteamWebApiResultExtractor.forResult(objectMapper, MatchHistoryDto.class), deadline)
+                .thenApply(matchHistoryDto -> Objects.nonNull(matchHistoryDto) ? matchHistoryDto : new MatchHistoryDto());
     }
 
     /**
@@ -104,59 +157,122 @@ public class SteamWebApiQueryService {
      * <p>This function does a rest call to steam web api and provides Match Details for given Dota2 account ID and Match Id.</p>
      */
     public MatchDetailsDto getMatchDetails(String matchId, Optional<Long> matchSeqNumOpt) {
-        MatchDetailsDto matchDetails = new MatchDetailsDto();
-        String url = buildMatchDetailsUrl(matchId);
-        ResponseEntity<MatchDetailsContainer> matchDetailsAPIResponseEntity = null;
+        return join(getMatchDetailsAsync(matchId, matchSeqNumOpt));
+    }
+
+    /**
+     * Asynchronous {@link #getMatchDetails(String, Optional)}. Cache and local DB hits complete right away.
+     * As the blocking call always did, a match steam can't provide yields an empty {@link MatchDetailsDto}.
+     */
+    public CompletableFuture<MatchDetailsDto> getMatchDetailsAsync(String matchId, Optional<Long> matchSeqNumOpt) {
+        MatchDetailsDto cachedMatchDetails = cacheForMatchDetailsAPI.get(matchId);
+        if(cachedMatchDetails != null) {
+            log.info("Cache return for matchId -> {}", matchId);
+            return CompletableFuture.completedFuture(cachedMatchDetails);
+        }
+
+        //Concurrent misses for the same matchId, both with or both without a match_seq_num, share a single local DB read, steam web api call and DB write
+        return matchDetailsSingleFlight.executeAsync(new MatchDetailsLoadKey(matchId, matchSeqNumOpt.isPresent()), () -> loadMatchDetails(matchId, matchSeqNumOpt))
+                .exceptionally(error -> {
+                    log.warn("No match details available for matchId: {}, {}", matchId, unwrap(error).getMessage());
+                    return new MatchDetailsDto();
+                });
+    }
+
+    /**
+     * Asynchronous {@link #getMatchDetails(String)}.
+     */
+    public CompletableFuture<MatchDetailsDto> getMatchDetailsAsync(String matchId) {
+        return getMatchDetailsAsync(matchId, Optional.empty());
+    }
 
-        if(cacheForMatchDetailsAPI.containsKey(matchId)) {
+    private record MatchDetailsLoadKey(String matchId, boolean withMatchSeqNum) {
+    }
+
+    private CompletableFuture<MatchDetailsDto> loadMatchDetails(String matchId, Optional<Long> matchSeqNumOpt) {
+        //Re-check as a previous in-flight load may have completed between the cache miss and joining the single-flight
+        MatchDetailsDto cachedMatchDetails = cacheForMatchDetailsAPI.get(matchId);
+        if(cachedMatchDetails != null) {
             log.info("Cache return for matchId -> {}", matchId);
-            return cacheForMatchDetailsAPI.get(matchId);
+            return CompletableFuture.completedFuture(cachedMatchDetails);
         }
 
         //get data from local db
-        if (matchDetailsDaoFileStorage.dataSourceEnabled) {
+        if (matchDetailsDaoFileStorage.isDataSourceEnabled()) {
             var matchDetailFromDB = getDataFromDb(matchId);
             if(Objects.nonNull(matchDetailFromDB) && matchDetailFromDB.getMatch_id() == Long.parseLong(matchId)) {
                 log.info("Local DB return for matchId -> {}", matchId);
-                return matchDetailFromDB;
+                return CompletableFuture.completedFuture(matchDetailFromDB);
             }
         }
 
-        try {
-            matchDetailsAPIResponseEntity = restTemplate.exchange(
-                    url, HttpMethod.GET, null, new ParameterizedTypeReference<>() {});
-            if(matchDetailsAPIResponseEntity.hasBody()) {
-                matchDetails = matchDetailsAPIResponseEntity.getBody().getResult();
-            }
-        } catch (HttpServerErrorException httpServerErrorException) {
-            log.error("HttpServerErrorException -> steam web api for matchId: {}", matchId, httpServerErrorException);
-            matchDetailsAPIResponseEntity = ResponseEntity.status(httpServerErrorException.getStatusCode()).build();
-        } catch (Exception e) {
-            log.error("Error occurred while fetching data from steam web api for matchId: {}", matchId, e);
-        }
+        return fetchMatchDetailsFromSteam(matchId, matchSeqNumOpt, Deadline.afterMillis(matchDetailsDeadlineMs));
+    }
+
+    /**
+     * Steam web api tier of "GetMatchDetails" -> fetches, caches and saves to local DB.
+     * While the GetMatchDetails circuit breaker is open, matches with a known sequence number go straight to the fallback.
+     * @return future failed with the steam error, or {@link MatchDetailsUnavailableException} when steam answered without
+     * the requested match; nothing is cached or saved then.
+     */
+    private CompletableFuture<MatchDetailsDto> fetchMatchDetailsFromSteam(String matchId, Optional<Long> matchSeqNumOpt, Deadline deadline) {
+        CompletableFuture<MatchDetailsDto> matchDetailsFuture;
+        if (matchSeqNumOpt.isPresent() && !steamWebApiClient.isCallPermitted(SteamEndpoint.GET_MATCH_DETAILS))
+            matchDetailsFuture = fetchMatchDetailsFromMatchHistoryBySequenceNum(matchSeqNumOpt, deadline);
+        else
+            matchDetailsFuture = fetchMatchDetailsFromMatchDetailsApi(matchId, matchSeqNumOpt, deadline);
+
+        return matchDetailsFuture.thenApply(matchDetails -> {
+            //an empty result (match_id 0) or another match at the given sequence number
+            if (matchDetails == null || matchDetails.getMatch_id() != Long.parseLong(matchId))
+                throw new MatchDetailsUnavailableException("Steam web api returned no match details for matchId: " + matchId);
+
+            //Cache-Save and save to local DB
+            cacheForMatchDetailsAPI.put(matchId, matchDetails);
+            if(matchDetailsDaoFileStorage.isDataSourceEnabled())
+                saveDataToDB(matchDetails);
+            return matchDetails;
+        });
+    }
+
+    private CompletableFuture<MatchDetailsDto> fetchMatchDetailsFromMatchDetailsApi(String matchId, Optional<Long> matchSeqNumOpt, Deadline deadline) {
+        String url = buildMatchDetailsUrl(matchId);
 
-        //Temp fix to avoid migration of all APIs to GetMatchHistoryBySequenceNum
-        //fall back to GetMatchHistoryBySequenceNum in case GetMatchDetails API fails with 500 response(As; since May 2024 API has stopped working)
-        if(Objects.nonNull(matchDetailsAPIResponseEntity) && matchDetailsAPIResponseEntity.getStatusCode().is5xxServerError() && matchSeqNumOpt.isPresent()) {
-            log.warn("Falling back to GetMatchHistoryBySequenceNum");
-            Optional<SteamWebApiResponseContainer<MatchHistoryDto>> matchHistoryResponseOpt = getMatchHistoryBySequenceNum(matchSeqNumOpt, Optional.of(1));
-            MatchDetailsDto finalMatchDetails = matchDetails;
-            matchHistoryResponseOpt
-                    .map(SteamWebApiResponseContainer::getResult)
-                    .map(MatchHistoryDto::getMatches)
+        return steamWebApiClient.get(url, SteamWebApiResultExtractor.forResult(objectMapper, MatchDetailsDto.class), deadline)
+                .handle((matchDetailsResult, error) -> {
+                    if (error == null)
+                        return CompletableFuture.completedFuture(matchDetailsResult);
+
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof SteamApiCircuitOpenException && matchSeqNumOpt.isPresent()) {
+                        //breaker opened by a concurrent call
+                        return fetchMatchDetailsFromMatchHistoryBySequenceNum(matchSeqNumOpt, deadline);
+                    } else if (cause instanceof HttpServerErrorException httpServerErrorException) {
+                        log.error("HttpServerErrorException -> steam web api for matchId: {}", matchId, httpServerErrorException);
+                        //Temp fix to avoid migration of all APIs to GetMatchHistoryBySequenceNum
+                        //fall back to GetMatchHistoryBySequenceNum in case GetMatchDetails API fails with 500 response(As; since May 2024 API has stopped working)
+                        if (httpServerErrorException.getStatusCode().is5xxServerError() && matchSeqNumOpt.isPresent())
+                            return fetchMatchDetailsFromMatchHistoryBySequenceNum(matchSeqNumOpt, deadline);
+                    } else {
+                        log.error("Error occurred while fetching data from steam web api for matchId: {}", matchId, cause);
+                    }
+                    return CompletableFuture.<MatchDetailsDto>failedFuture(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<MatchDetailsDto> fetchMatchDetailsFromMatchHistoryBySequenceNum(Optional<Long> matchSeqNumOpt, Deadline deadline) {
+        log.warn("Falling back to GetMatchHistoryBySequenceNum");
+        return fetchMatchHistoryBySequenceNum(matchSeqNumOpt, Optional.of(1), SteamWebApiResultExtractor.forResult(objectMapper, MatchHistoryDto.class), deadline).thenApply(matchHistory -> {
+            MatchDetailsDto matchDetails = new MatchDetailsDto();
+            matchHistory.map(MatchHistoryDto::getMatches)
                     .ifPresent(matches -> {
                         if (!CollectionUtils.isEmpty(matches)) {
-                            BeanUtils.copyProperties(matches.get(0), finalMatchDetails);
+                            BeanUtils.copyProperties(matches.get(0), matchDetails);
                         }
                     });
-        }
-
-        //Cache-Save and save to local DB
-        cacheForMatchDetailsAPI.put(String.valueOf(matchDetails.getMatch_id()), matchDetails);
-        if(matchDetailsDaoFileStorage.dataSourceEnabled)
-            saveDataToDB(matchDetails);
-
-        return matchDetails;
+            return matchDetails;
+        });
     }
 
     /**
@@ -165,18 +281,61 @@ public class SteamWebApiQueryService {
      * <p>This function does a rest call to steam web api and provides MatchHistory details for given Dota2 account ID.</p>
      */
     public Optional<SteamWebApiResponseContainer<MatchHistoryDto>> getMatchHistoryBySequenceNum(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt) {
+        return join(getMatchHistoryBySequenceNumAsync(startAtMatchSeqNumOpt, matchesRequestedOpt));
+    }
+
+    /**
+     * Asynchronous {@link #getMatchHistoryBySequenceNum(Optional, Optional)}, completed with an empty Optional on errors.
+     */
+    public CompletableFuture<Optional<SteamWebApiResponseContainer<MatchHistoryDto>>> getMatchHistoryBySequenceNumAsync(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt) {
+        JavaType responseContainerType = objectMapper.getTypeFactory().constructParametricType(SteamWebApiResponseContainer.class, MatchHistoryDto.class);
+        return fetchMatchHistoryBySequenceNum(startAtMatchSeqNumOpt, matchesRequestedOpt, SteamWebApiResultExtractor.forBody(objectMapper, responseContainerType));
+    }
+
+    /**
+     * Same as {@link #getMatchHistoryBySequenceNum(Optional, Optional)} but binds only the "result" object of the response.
+     */
+    public Optional<MatchHistoryDto> getMatchHistoryBySequenceNumResult(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt) {
+        return join(getMatchHistoryBySequenceNumResultAsync(startAtMatchSeqNumOpt, matchesRequestedOpt));
+    }
+
+    /**
+     * Asynchronous {@link #getMatchHistoryBySequenceNumResult(Optional, Optional)}.
+     */
+    public CompletableFuture<Optional<MatchHistoryDto>> getMatchHistoryBySequenceNumResultAsync(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt) {
+        return fetchMatchHistoryBySequenceNum(startAtMatchSeqNumOpt, matchesRequestedOpt, SteamWebApiResultExtractor.forResult(objectMapper, MatchHistoryDto.class));
+    }
+
+    /**
+     * Same as {@link #getMatchHistoryBySequenceNumResult(Optional, Optional)} but binds the "result" object into the
+     * given type, ex: a page type keeping the full match details of every match.
+     */
+    public <T> Optional<T> getMatchHistoryBySequenceNumResult(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt, Class<T> resultType) {
+        return join(getMatchHistoryBySequenceNumResultAsync(startAtMatchSeqNumOpt, matchesRequestedOpt, resultType));
+    }
+
+    /**
+     * Asynchronous {@link #getMatchHistoryBySequenceNumResult(Optional, Optional, Class)}.
+     */
+    public <T> CompletableFuture<Optional<T>> getMatchHistoryBySequenceNumResultAsync(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt, Class<T> resultType) {
+        return fetchMatchHistoryBySequenceNum(startAtMatchSeqNumOpt, matchesRequestedOpt, SteamWebApiResultExtractor.forResult(objectMapper, resultType));
+    }
+
+    private <T> CompletableFuture<Optional<T>> fetchMatchHistoryBySequenceNum(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt, SteamWebApiResultExtractor<T> resultExtractor) {
+        return fetchMatchHistoryBySequenceNum(startAtMatchSeqNumOpt, matchesRequestedOpt, resultExtractor, Deadline.NONE);
+    }
+
+    private <T> CompletableFuture<Optional<T>> fetchMatchHistoryBySequenceNum(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> matchesRequestedOpt,
+                                                                             SteamWebApiResultExtractor<T> resultExtractor, Deadline deadline) {
         String matchHistoryUrl = buildMatchHistoryBySequenceNumUrl(startAtMatchSeqNumOpt, matchesRequestedOpt);
-        try {
-            return restTemplate.exchange(
-                            matchHistoryUrl,
-                            HttpMethod.GET,
-                            null, new ParameterizedTypeReference<Optional<SteamWebApiResponseContainer<MatchHistoryDto>>>() {}
-                    ).getBody();
-        } catch (Exception ex) {
+        return steamWebApiClient.get(matchHistoryUrl, resultExtractor, deadline).handle((result, error) -> {
+            if (error == null)
+                return Optional.ofNullable(result);
+            Throwable cause = unwrap(error);
             log.error("Error in SteamWebApiQueryService::getMatchHistoryBySequenceNum -> ErrorMessage: {}, GET URL: {}, ErrorStackTrace: {}",
-                    ex.getMessage(), matchHistoryUrl, ex.getStackTrace());
+                    cause.getMessage(), matchHistoryUrl, cause.getStackTrace());
             return Optional.empty();
-        }
+        });
     }
 
     /**
@@ -187,24 +346,131 @@ public class SteamWebApiQueryService {
     }
 
     /**
-     * This function will return last 500 Matches for given dota2 account Id.
+     * <p>
+     *     Brings the local match history of given dota2 account Id ({@link AccountMatchHistoryStore}) up to date and returns it, newest first.
+     * </p>
+     * The first sync downloads the full history (up to the 500 matches Steam keeps), later syncs only fetch matches newer
+     * than the newest stored one, in small pages of {@code kv.history.sync.matches-requested} - usually a single request.
+     * Concurrent syncs of the same account share one upstream sync.
      */
-    public Set<MatchesDto> getLast500MatchesForDota2AccountId(String dota2AccountId) throws Exception {
-        MatchHistoryDto matchHistoryDto = getMatchHistory(dota2AccountId, null, null);
-        Set<MatchesDto> matchesDtoSet = new HashSet<>();
-        if(containsMatchesPlayed(matchHistoryDto))
-             matchesDtoSet = new HashSet<>(matchHistoryDto.getMatches());
-        else if(matchHistoryDto.getStatusDetail() != null) {
-            throw new Exception(matchHistoryDto.getStatusDetail());
+    public List<MatchesDto> syncMatchHistory(String dota2AccountId) throws Exception {
+        return joinChecked(syncMatchHistoryAsync(dota2AccountId));
+    }
+
+    /**
+     * Asynchronous {@link #syncMatchHistory(String)}; a Steam error status fails the future.
+     */
+    public CompletableFuture<List<MatchesDto>> syncMatchHistoryAsync(String dota2AccountId) {
+        return accountHistorySingleFlight.executeAsync(dota2AccountId, () -> fetchNewMatchesAndMerge(dota2AccountId));
+    }
+
+    private CompletableFuture<List<MatchesDto>> fetchNewMatchesAndMerge(String dota2AccountId) {
+        long newestStoredMatchId = accountMatchHistoryStore.getNewestMatchId(dota2AccountId);
+        if (newestStoredMatchId == AccountMatchHistoryStore.NO_WATERMARK) {
+            return collectMatchHistoryAsync(dota2AccountId, null, null, page -> true)
+                    .thenApply(matches -> accountMatchHistoryStore.merge(dota2AccountId, matches));
+        }
+
+        //Pages are newest first: keep paging only while the page just received is still entirely newer than the watermark
+        Predicate<List<MatchesDto>> isNewerThanWatermark = page -> page.get(page.size() - 1).getMatch_id() > newestStoredMatchId;
+        return collectMatchHistoryAsync(dota2AccountId, null, historySyncMatchesRequested, isNewerThanWatermark).thenApply(matches -> {
+            List<MatchesDto> newMatches = matches.stream().takeWhile(match -> match.getMatch_id() > newestStoredMatchId).toList();
+            log.info("Match history sync for account: {} -> {} new matches", dota2AccountId, newMatches.size());
+            return accountMatchHistoryStore.merge(dota2AccountId, newMatches);
+        });
+    }
+
+    /**
+     * <p>Asynchronous multi-page sweep of the match history of given dota2 account Id, newest match first.</p>
+     * Collects the pages delivered by {@link #forEachMatchHistoryPageAsync(String, String, Integer, Predicate, Consumer)}.
+     * Paging stops on no remaining results, an empty page or {@code fetchNextPageWhile} rejecting the page just received.
+     * A Steam error status on the first page fails the future, so does running out of the
+     * {@code kv.steam.deadline.match-history-ms} budget shared by all pages.
+     *
+     * @param heroId           optional hero filter applied to every page, may be null
+     * @param matchesRequested optional page size (matches_requested, max 100), may be null
+     */
+    public CompletableFuture<List<MatchesDto>> collectMatchHistoryAsync(String dota2AccountId, String heroId, Integer matchesRequested,
+                                                                       Predicate<List<MatchesDto>> fetchNextPageWhile) {
+        return collectMatchHistoryAsync(dota2AccountId, heroId, matchesRequested, fetchNextPageWhile, Deadline.afterMillis(matchHistoryDeadlineMs));
+    }
+
+    /**
+     * Same as {@link #collectMatchHistoryAsync(String, String, Integer, Predicate)} within the given deadline.
+     */
+    public CompletableFuture<List<MatchesDto>> collectMatchHistoryAsync(String dota2AccountId, String heroId, Integer matchesRequested,
+                                                                       Predicate<List<MatchesDto>> fetchNextPageWhile, Deadline deadline) {
+        List<MatchesDto> collectedMatches = new ArrayList<>();
+        return forEachMatchHistoryPageAsync(dota2AccountId, heroId, matchesRequested, fetchNextPageWhile, collectedMatches::addAll, deadline)
+                .thenApply(done -> collectedMatches);
+    }
+
+    /**
+     * <p>Page by page variant of {@link #collectMatchHistoryAsync(String, String, Integer, Predicate)}.</p>
+     * Each page is handed to {@code pageConsumer} as soon as it arrived, after the request for the next page was started,
+     * so the consumer works on page N while page N+1 is on the wire. Pages are delivered one at a time and in order, on
+     * the thread that completed the page request: hand off blocking work. A throwing consumer fails the future and
+     * stops paging. Same stop conditions, error handling and deadline as {@code collectMatchHistoryAsync}.
+     *
+     * @param fetchNextPageWhile tested with the matches of each page before it is consumed, false stops paging after it
+     * @param pageConsumer       called with the matches of every non-empty page
+     */
+    public CompletableFuture<Void> forEachMatchHistoryPageAsync(String dota2AccountId, String heroId, Integer matchesRequested,
+                                                               Predicate<List<MatchesDto>> fetchNextPageWhile, Consumer<List<MatchesDto>> pageConsumer) {
+        return forEachMatchHistoryPageAsync(dota2AccountId, heroId, matchesRequested, fetchNextPageWhile, pageConsumer, Deadline.afterMillis(matchHistoryDeadlineMs));
+    }
+
+    /**
+     * Same as {@link #forEachMatchHistoryPageAsync(String, String, Integer, Predicate, Consumer)} within the given deadline.
+     */
+    public CompletableFuture<Void> forEachMatchHistoryPageAsync(String dota2AccountId, String heroId, Integer matchesRequested,
+                                                               Predicate<List<MatchesDto>> fetchNextPageWhile, Consumer<List<MatchesDto>> pageConsumer,
+                                                               Deadline deadline) {
+        return getMatchHistoryAsync(dota2AccountId, null, heroId, matchesRequested, deadline).thenCompose(firstPage -> {
+            if(!containsMatchesPlayed(firstPage) && firstPage.getStatusDetail() != null)
+                throw new CompletionException(new Exception(firstPage.getStatusDetail()));
+            return consumeMatchHistoryPages(dota2AccountId, heroId, matchesRequested, fetchNextPageWhile, pageConsumer, deadline, firstPage);
+        });
+    }
+
+    private CompletableFuture<Void> consumeMatchHistoryPages(String dota2AccountId, String heroId, Integer matchesRequested,
+                                                             Predicate<List<MatchesDto>> fetchNextPageWhile, Consumer<List<MatchesDto>> pageConsumer,
+                                                             Deadline deadline, MatchHistoryDto page) {
+        List<MatchesDto> matches = page.getMatches() == null ? List.of() : page.getMatches();
+        CompletableFuture<MatchHistoryDto> nextPage = null;
+        if (page.getStatus() == 1 && page.getResults_remaining() != 0 && !matches.isEmpty() && fetchNextPageWhile.test(matches)) {
+            //start_at_match_id is inclusive, starting right below the last match avoids re-fetching it
+            String startAtMatchId = String.valueOf(matches.get(matches.size() - 1).getMatch_id() - 1);
+            nextPage = getMatchHistoryAsync(dota2AccountId, startAtMatchId, heroId, matchesRequested, deadline);
         }
 
-        while(matchHistoryDto.getStatus() == 1 && matchHistoryDto.getResults_remaining() != 0) {
-            long startAtMatchId = Objects.requireNonNull(matchHistoryDto.getMatches().stream().skip(matchHistoryDto.getMatches().size()-1).findFirst().orElse(null)).getMatch_id();
-            matchHistoryDto = getMatchHistory(dota2AccountId, startAtMatchId + "", null);
-            matchesDtoSet.addAll(matchHistoryDto.getMatches());
+        if (!matches.isEmpty()) {
+            try {
+                pageConsumer.accept(matches);
+            } catch (RuntimeException e) {
+                if (nextPage != null)
+                    nextPage.cancel(false);
+                throw e;
+            }
         }
+        if (nextPage == null)
+            return CompletableFuture.completedFuture(null);
+        return nextPage.thenCompose(next -> consumeMatchHistoryPages(dota2AccountId, heroId, matchesRequested, fetchNextPageWhile, pageConsumer, deadline, next));
+    }
 
-        return matchesDtoSet;
+    /**
+     * This function will return last 500 Matches for given dota2 account Id.
+     */
+    public Set<MatchesDto> getLast500MatchesForDota2AccountId(String dota2AccountId) throws Exception {
+        return joinChecked(getLast500MatchesForDota2AccountIdAsync(dota2AccountId));
+    }
+
+    /**
+     * Asynchronous {@link #getLast500MatchesForDota2AccountId(String)}.
+     */
+    public CompletableFuture<Set<MatchesDto>> getLast500MatchesForDota2AccountIdAsync(String dota2AccountId) {
+        return syncMatchHistoryAsync(dota2AccountId)
+                .thenApply(matchHistory -> new HashSet<>(matchHistory.subList(0, Math.min(STEAM_MATCH_HISTORY_LIMIT, matchHistory.size()))));
     }
 
     /**
@@ -212,21 +478,14 @@ public class SteamWebApiQueryService {
      */
     //In-progress
     public Set<MatchesDto> getLast500MatchesForDota2AccountId(String dota2AccountId, String heroId) throws Exception {
-        MatchHistoryDto matchHistoryDto = getMatchHistory(dota2AccountId, null, heroId);
-        Set<MatchesDto> matchesDtoSet = new HashSet<>();
-        if(containsMatchesPlayed(matchHistoryDto))
-            matchesDtoSet = new HashSet<>(matchHistoryDto.getMatches());
-        else if(matchHistoryDto.getStatusDetail() != null) {
-            throw new Exception(matchHistoryDto.getStatusDetail());
-        }
-
-        while(matchHistoryDto.getStatus() == 1 && matchHistoryDto.getResults_remaining() != 0) {
-            long startAtMatchId = Objects.requireNonNull(matchHistoryDto.getMatches().stream().skip(matchHistoryDto.getMatches().size()-1).findFirst().orElse(null)).getMatch_id();
-            matchHistoryDto = getMatchHistory(dota2AccountId, startAtMatchId + "", null);
-            matchesDtoSet.addAll(matchHistoryDto.getMatches());
-        }
+        return joinChecked(getLast500MatchesForDota2AccountIdAsync(dota2AccountId, heroId));
+    }
 
-        return matchesDtoSet;
+    /**
+     * Asynchronous {@link #getLast500MatchesForDota2AccountId(String, String)}.
+     */
+    public CompletableFuture<Set<MatchesDto>> getLast500MatchesForDota2AccountIdAsync(String dota2AccountId, String heroId) {
+        return collectMatchHistoryAsync(dota2AccountId, heroId, null, page -> true).thenApply(HashSet::new);
     }
 
     /**
@@ -234,36 +493,38 @@ public class SteamWebApiQueryService {
      * Note: If player not played any matches today then it will return matches for the day which player last played.
      */
     public Set<MatchesDto> getTodaysPlayedMatches(String dota2AccountId) throws Exception {
+        return joinChecked(getTodaysPlayedMatchesAsync(dota2AccountId));
+    }
+
+    /**
+     * Asynchronous {@link #getTodaysPlayedMatches(String)}.
+     */
+    public CompletableFuture<Set<MatchesDto>> getTodaysPlayedMatchesAsync(String dota2AccountId) {
+        //Local history synced with steam; a steam error status fails the sync
+        return syncMatchHistoryAsync(dota2AccountId).thenApply(this::getTodaysPlayedMatches);
+    }
+
+    private Set<MatchesDto> getTodaysPlayedMatches(List<MatchesDto> matchHistory) {
         Set<MatchesDto> matchesDtoSet = new HashSet<>();
         List<MatchesDto> filteredMatches = new ArrayList<>();
-        LocalDateTime latestMatchPlayedDate = null;
 
-        MatchHistoryDto matchHistory = getMatchHistory(dota2AccountId, null, null);
         MatchesDto latestMatchPlayed = new MatchesDto();
 
-        if(containsMatchesPlayed(matchHistory))
-            latestMatchPlayed = matchHistory.getMatches().get(0);
-        else if(matchHistory.getStatusDetail() != null)
-            throw new Exception(matchHistory.getStatusDetail());
+        if(!matchHistory.isEmpty())
+            latestMatchPlayed = matchHistory.get(0);
 
 
-        //Finding the recent date for which the player has played some matches.
+        //Finding the recent date (IST) for which the player has played some matches.
         //All Matches played after 3AM of this date are taken into processing.
-        if(latestMatchPlayed != null) {
-            latestMatchPlayedDate = LocalDateTime.ofEpochSecond(
-                    latestMatchPlayed.getStart_time(), 0, ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS));  //Converting epoch time to IST LocalDateTime
-
-            if(latestMatchPlayedDate.toLocalTime().isBefore(LocalTime.ofSecondOfDay(THREE_HOURS_TIME_IN_SECONDS)))
-                latestMatchPlayedDate = latestMatchPlayedDate.minusDays(1); //Moving date 1 day in past as we mostly play some matches after 12am for that day...only if last match is played between 12am to 3am
+        long latestMatchPlayedDay = MatchTimeIndex.istEpochDay(latestMatchPlayed.getStart_time());
+        if(MatchTimeIndex.istSecondOfDay(latestMatchPlayed.getStart_time()) < THREE_HOURS_TIME_IN_SECONDS)
+            latestMatchPlayedDay--; //Moving date 1 day in past as we mostly play some matches after 12am for that day...only if last match is played between 12am to 3am
+        LocalDate latestMatchPlayedDate = LocalDate.ofEpochDay(latestMatchPlayedDay);
 
-            latestMatchPlayedDate = LocalDateTime.of(latestMatchPlayedDate.toLocalDate(), LocalTime.ofSecondOfDay(THREE_HOURS_TIME_IN_SECONDS));
-        }
-
-        //Passing above calculated DateTime, and filtering all the matches which are played after this time.
-        if(latestMatchPlayedDate != null) {
-            filteredMatches = getMatchesPlayedOfTheDay(latestMatchPlayedDate, matchHistory.getMatches());
-            log.info("Total Matches played for that day({}): {}", latestMatchPlayedDate.toLocalDate(), filteredMatches.size());
-        }
+        //Passing above calculated 3AM as epoch seconds, and filtering all the matches which are played after this time.
+        long dayStartEpochSecond = MatchTimeIndex.istDayStartEpochSecond(latestMatchPlayedDate) + THREE_HOURS_TIME_IN_SECONDS;
+        filteredMatches = getMatchesPlayedOfTheDay(dayStartEpochSecond, MatchTimeIndex.of(matchHistory));
+        log.info("Total Matches played for that day({}): {}", latestMatchPlayedDate, filteredMatches.size());
 
         //Logging date/time details for first and last matches of the day
         if(!filteredMatches.isEmpty())
@@ -275,35 +536,130 @@ public class SteamWebApiQueryService {
     }
 
     public Set<MatchesDto> getMatchesForDota2AccountId(String dota2AccountId, int noOfDaysMatches) throws Exception {
-        MatchHistoryDto matchHistoryDto = getMatchHistory(dota2AccountId, null, null);
-        Set<MatchesDto> matchesDtoSet = new HashSet<>();
-        Collection<MatchesDto> tempMatchesDtoSet = new HashSet<>();
-        if(containsMatchesPlayed(matchHistoryDto)) {
-            tempMatchesDtoSet = new HashSet<>(matchHistoryDto.getMatches());
-            matchesDtoSet.addAll(tempMatchesDtoSet);
-        }
-        else if(matchHistoryDto.getStatusDetail() != null) {
-            throw new Exception(matchHistoryDto.getStatusDetail());
-        }
+        return joinChecked(getMatchesForDota2AccountIdAsync(dota2AccountId, noOfDaysMatches));
+    }
 
-        while(matchHistoryDto.getStatus() == 1 && matchHistoryDto.getResults_remaining() != 0 &&
-                tempMatchesDtoSet.stream().anyMatch(x -> isMatchPlayedWithinLastNDays.test(x.getStart_time(), noOfDaysMatches))) {
-            long startAtMatchId = Objects.requireNonNull(matchHistoryDto.getMatches().stream().skip(matchHistoryDto.getMatches().size()-1).findFirst().orElse(null)).getMatch_id();
-            matchHistoryDto = getMatchHistory(dota2AccountId, startAtMatchId + "", null);
-            tempMatchesDtoSet = matchHistoryDto.getMatches();
-            matchesDtoSet.addAll(tempMatchesDtoSet);
-        }
+    /**
+     * Asynchronous {@link #getMatchesForDota2AccountId(String, int)}.
+     */
+    public CompletableFuture<Set<MatchesDto>> getMatchesForDota2AccountIdAsync(String dota2AccountId, int noOfDaysMatches) {
+        return syncMatchHistoryAsync(dota2AccountId).thenApply(matchHistory -> getMatchesPlayedWithinLastNDays(matchHistory, noOfDaysMatches));
+    }
 
+    private Set<MatchesDto> getMatchesPlayedWithinLastNDays(List<MatchesDto> matchHistory, int noOfDaysMatches) {
+        //Same result as paging steam directly: whole pages, continuing while the previous page still had a match within the last N days
+        Set<MatchesDto> matchesDtoSet = new HashSet<>();
+        long withinLastNDaysFrom = withinLastNDaysFromEpochSecond(noOfDaysMatches);
+        for (int pageStart = 0; pageStart < Math.min(STEAM_MATCH_HISTORY_LIMIT, matchHistory.size()); pageStart += STEAM_MATCH_HISTORY_PAGE_SIZE) {
+            List<MatchesDto> page = matchHistory.subList(pageStart, Math.min(pageStart + STEAM_MATCH_HISTORY_PAGE_SIZE, matchHistory.size()));
+            matchesDtoSet.addAll(page);
+            if (page.stream().noneMatch(x -> x.getStart_time() >= withinLastNDaysFrom))
+                break;
+        }
         return matchesDtoSet;
     }
 
+    /**
+     * Matches of the account played within the last N days (on the given hero, if any), answered from the local match
+     * store via its secondary indexes without calling steam.
+     * @param heroId null for any hero
+     * @return stored matches, newest first; empty when no local storage is configured or the indexes are disabled.
+     */
+    public List<MatchDetailsDto> getStoredMatchesForDota2AccountId(long dota2AccountId, Integer heroId, int noOfDaysMatches) {
+        if (!matchDetailsDaoFileStorage.isDataSourceEnabled() || matchSecondaryIndex == null)
+            return List.of();
+        MatchQuery query = MatchQuery.forAccount(dota2AccountId).withStartedAtOrAfter(withinLastNDaysFromEpochSecond(noOfDaysMatches));
+        return matchDetailsDaoFileStorage.findMatches(heroId != null ? query.withHero(heroId) : query);
+    }
+
     //In-progress
     public List<MatchDetailsDto> getMatchDetailsForTodaysMatches(Set<Long> matchIds) {
-        return matchIds.stream()
-                .map(matchId -> getMatchDetails(String.valueOf(matchId)))
+        return getMatchDetailsBatch(new ArrayList<>(matchIds))
+                .stream()
+                .filter(MatchDetailsResult::isSuccess)
+                .map(MatchDetailsResult::matchDetails)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * <p>Batch variant of "GetMatchDetails".</p>
+     * Cache and local DB hits are resolved on the calling thread first, only the remaining matchIds are fetched from
+     * steam web api - asynchronously, with at most {@code kv.steam.batch.max-concurrency} requests in flight.
+     * @return one result per requested matchId in input order; a failing matchId yields an error result instead of failing the batch.
+     */
+    public List<MatchDetailsResult> getMatchDetailsBatch(List<Long> matchIds) {
+        return join(getMatchDetailsBatchAsync(matchIds));
+    }
+
+    /**
+     * Asynchronous {@link #getMatchDetailsBatch(List)}, never completed exceptionally.
+     */
+    public CompletableFuture<List<MatchDetailsResult>> getMatchDetailsBatchAsync(List<Long> matchIds) {
+        MatchDetailsResult[] results = new MatchDetailsResult[matchIds.size()];
+        List<Integer> pendingIndexes = new ArrayList<>();
+
+        for (int i = 0; i < matchIds.size(); i++) {
+            MatchDetailsDto cachedMatchDetails = cacheForMatchDetailsAPI.get(String.valueOf(matchIds.get(i)));
+            if (cachedMatchDetails != null) {
+                results[i] = MatchDetailsResult.success(matchIds.get(i), cachedMatchDetails);
+            } else {
+                pendingIndexes.add(i);
+            }
+        }
+
+        if (matchDetailsDaoFileStorage.isDataSourceEnabled() && !pendingIndexes.isEmpty()) {
+            Map<Long, MatchDetailsDto> matchDetailsFromDB = matchDetailsDaoFileStorage
+                    .findByMatchIds(pendingIndexes.stream().map(matchIds::get).collect(Collectors.toSet()))
+                    .found();
+            pendingIndexes.removeIf(index -> {
+                MatchDetailsDto matchDetailFromDB = matchDetailsFromDB.get(matchIds.get(index));
+                if (Objects.nonNull(matchDetailFromDB) && matchDetailFromDB.getMatch_id() == matchIds.get(index)) {
+                    results[index] = MatchDetailsResult.success(matchIds.get(index), matchDetailFromDB);
+                    return true;
+                }
+                return false;
+            });
+        }
+        log.info("getMatchDetails batch -> requested: {}, served locally: {}, fetching from steam: {}",
+                matchIds.size(), matchIds.size() - pendingIndexes.size(), pendingIndexes.size());
+
+        if (pendingIndexes.isEmpty())
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+
+        //Each lane fetches its next pending matchId once its previous one completed -> at most one request in flight per lane
+        AtomicInteger nextPending = new AtomicInteger();
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(Math.max(1, batchMaxConcurrency), pendingIndexes.size())];
+        for (int lane = 0; lane < lanes.length; lane++)
+            lanes[lane] = fetchNextPendingMatchDetails(matchIds, pendingIndexes, nextPending, results);
+        return CompletableFuture.allOf(lanes).thenApply(done -> Arrays.asList(results));
+    }
+
+    private CompletableFuture<Void> fetchNextPendingMatchDetails(List<Long> matchIds, List<Integer> pendingIndexes, AtomicInteger nextPending,
+                                                                 MatchDetailsResult[] results) {
+        int pending = nextPending.getAndIncrement();
+        if (pending >= pendingIndexes.size())
+            return CompletableFuture.completedFuture(null);
+
+        int index = pendingIndexes.get(pending);
+        long matchId = matchIds.get(index);
+        String matchIdString = String.valueOf(matchId);
+        //same key and loader as getMatchDetailsAsync without a match_seq_num, so either side can share the other's load
+        return matchDetailsSingleFlight.executeAsync(new MatchDetailsLoadKey(matchIdString, false), () -> loadMatchDetails(matchIdString, Optional.empty()))
+                .handle((matchDetails, error) -> {
+                    if (error == null && matchDetails.getMatch_id() == matchId) {
+                        results[index] = MatchDetailsResult.success(matchId, matchDetails);
+                    } else if (error == null) {
+                        results[index] = MatchDetailsResult.failure(matchId, new MatchDetailsUnavailableException("No match details for matchId: " + matchId));
+                    } else {
+                        Throwable cause = unwrap(error);
+                        log.error("Error occurred while fetching match details in batch for matchId: {}", matchId, cause);
+                        results[index] = MatchDetailsResult.failure(matchId, cause instanceof Exception exception ? exception : new CompletionException(cause));
+                    }
+                    return null;
+                })
+                .thenCompose(done -> fetchNextPendingMatchDetails(matchIds, pendingIndexes, nextPending, results));
+    }
+
     private void logDateTimeDetailsForFirstAndLastMatches(List<MatchesDto> matchesDtoList) {
         Consumer<List<MatchesDto>> logFirstAndLastMatchPlayedDateDetails = matches -> {
             //converting epoch time to IST LocalDateTime
@@ -321,10 +677,10 @@ public class SteamWebApiQueryService {
     }
 
     /**
-     * This function will return all the matches who start time is greater than requestedDate.
+     * This function will return all the matches who start time is greater than (or equal to) given epoch second.
      */
-    private List<MatchesDto> getMatchesPlayedOfTheDay(LocalDateTime requestedDate, List<MatchesDto> allMatches) {
-        return allMatches.stream().filter(x -> x.getStart_time() >= requestedDate.toEpochSecond(ZoneOffset.ofTotalSeconds(FIVE_AND_HALF_HOURS_TIME_IN_SECONDS))).collect(Collectors.toList());
+    private List<MatchesDto> getMatchesPlayedOfTheDay(long fromEpochSecond, MatchTimeIndex matchTimeIndex) {
+        return matchTimeIndex.startedAtOrAfter(fromEpochSecond);
     }
 
     private boolean containsMatchesPlayed(MatchHistoryDto matchHistoryDto) {
@@ -336,15 +692,17 @@ public class SteamWebApiQueryService {
     /**
      * This function builds url for MatchHistory steam web api
      */
-    private String buildMatchHistoryUrl(String dota2AccountId, String startAtMatchId, String heroId) {
+    private String buildMatchHistoryUrl(String dota2AccountId, String startAtMatchId, String heroId, Integer matchesRequested) {
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromHttpUrl(Dota2SteamWebApiUrls.MATCH_HISTORY_URL)
-                .queryParam("key", SteamWebApiKeys.PRIMARY_STEAM_ACCOUNT_WEB_API_KEY)
+                .queryParam("key", steamApiKeyPool.nextKey())
                 .queryParam("account_id", dota2AccountId);
 
         if(startAtMatchId != null && !startAtMatchId.isEmpty())
             uriComponentsBuilder.queryParam("start_at_match_id", startAtMatchId);
         if(heroId != null && !heroId.isEmpty())
             uriComponentsBuilder.queryParam("hero_id", heroId);
+        if(matchesRequested != null)
+            uriComponentsBuilder.queryParam("matches_requested", matchesRequested);
 
         return uriComponentsBuilder.toUriString();
     }
@@ -354,7 +712,7 @@ public class SteamWebApiQueryService {
      */
     private String buildMatchDetailsUrl(String matchId) {
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromHttpUrl(Dota2SteamWebApiUrls.MATCH_DETAILS_URL)
-                .queryParam("key", SteamWebApiKeys.PRIMARY_STEAM_ACCOUNT_WEB_API_KEY)
+                .queryParam("key", steamApiKeyPool.nextKey())
                 .queryParam("match_id", matchId);
         return uriComponentsBuilder.toUriString();
     }
@@ -364,7 +722,7 @@ public class SteamWebApiQueryService {
      */
     private String buildMatchHistoryBySequenceNumUrl(Optional<Long> startAtMatchSeqNumOpt, Optional<Integer> numberOfMatchesRequestedOpt) {
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromHttpUrl(Dota2SteamWebApiUrls.MATCH_HISTORY_BY_SEQUENCE_NUM_URL)
-                .queryParam("key", SteamWebApiKeys.PRIMARY_STEAM_ACCOUNT_WEB_API_KEY)
+                .queryParam("key", steamApiKeyPool.nextKey())
                 .queryParamIfPresent("start_at_match_seq_num", startAtMatchSeqNumOpt)
                 .queryParamIfPresent("matches_requested", numberOfMatchesRequestedOpt);
         return uriComponentsBuilder.toUriString();
@@ -374,12 +732,55 @@ public class SteamWebApiQueryService {
         return matchDetailsDaoFileStorage.findByMatchId(matchId);
     }
 
+    /**
+     * A failed write is logged, the fetched match details are still served (and stored again on the next fetch).
+     */
     private void saveDataToDB(MatchDetailsDto matchDetails) {
-        matchDetailsDaoFileStorage.save(matchDetails);
+        try {
+            matchDetailsDaoFileStorage.save(matchDetails);
+        } catch (MatchDetailsSaveException e) {
+            log.error("Error occurred while saving match details, matchId: {}, {}", matchDetails.getMatch_id(), e.getMessage());
+        }
+    }
+
+    /**
+     * Sync adapters wait for their async variant and rethrow its failure as the blocking call would have thrown it.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    private static <T> T joinChecked(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause)
+                throw cause;
+            throw e;
+        }
     }
 
-    Predicate<Long> isMatchPlayedWithinLast30Days = (matchStartTime) -> LocalDate.ofInstant(Instant.ofEpochSecond(matchStartTime), ZoneId.of("Asia/Kolkata")).isAfter(LocalDate.now().minusDays(30));
-    BiPredicate<Long, Integer> isMatchPlayedWithinLastNDays = (matchStartTime, numberOfDays)
-            -> LocalDate.ofInstant(Instant.ofEpochSecond(matchStartTime), ZoneId.of("Asia/Kolkata")).isAfter(LocalDate.now().minusDays(numberOfDays));
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    Predicate<Long> isMatchPlayedWithinLast30Days = (matchStartTime) -> matchStartTime >= withinLastNDaysFromEpochSecond(30);
+    BiPredicate<Long, Integer> isMatchPlayedWithinLastNDays = (matchStartTime, numberOfDays) -> matchStartTime >= withinLastNDaysFromEpochSecond(numberOfDays);
+
+    /**
+     * A match is played within the last N days when its IST date is after (today - N days), i.e. it started at or after
+     * 00:00 IST of (today - N + 1 days).
+     */
+    private static long withinLastNDaysFromEpochSecond(int numberOfDays) {
+        return MatchTimeIndex.istDayStartEpochSecond(LocalDate.now().minusDays(numberOfDays - 1L));
+    }
 
 }
@@ -0,0 +1,284 @@
+package com.kv.stats;
+
+import com.kv.dao.MatchDetailsDao;
+import com.kv.dao.MatchDetailsSaveListener;
+import com.kv.dao.MatchStoreReconciler;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import com.kv.matchdetails.dto.PlayersDto;
+import com.kv.service.CommonUtilityService;
+import com.kv.util.AccountHeroKeys;
+import com.kv.util.LongHashSet;
+import com.kv.util.MatchTimeIndex;
+import com.kv.util.SnapshotFile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ *     Per-account aggregates (games, wins, KDA sums, last played, streaks) maintained incrementally as matches are
+ *     saved through {@link com.kv.dao.MatchDetailsDao}, overall, per hero and per IST day, so summary lookups are a
+ *     hash probe instead of re-reading and re-scanning every stored match.
+ * </p>
+ * <p>
+ *     Counters live in {@link StatsTable}s (primitive keys and columns). Each match is counted once, tracked by match ID.
+ *     Streaks follow match start time; a match saved out of order counts towards every other counter but not the streak.
+ * </p>
+ * <p>
+ *     Snapshotted to {@code <kv.datasource.url>/dota2/STATS/account-stats.bin} ({@link SnapshotFile}) every
+ *     {@code kv.stats.flush-interval-seconds} when changed and on shutdown, and reloaded on startup. Once the application
+ *     is ready, stored matches missing from the aggregates (saved after the last snapshot before a crash, or while
+ *     aggregation was disabled) are replayed in the background, see {@link MatchStoreReconciler}.
+ * </p>
+ * <ul>
+ *     Properties:
+ *     <li>kv.stats.enabled -> false disables aggregation (default true)</li>
+ *     <li>kv.stats.flush-interval-seconds -> snapshot interval (default 30)</li>
+ *     <li>kv.stats.reconcile.enabled -> false skips the startup reconcile with the match store (default true)</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "kv.stats.enabled", havingValue = "true", matchIfMissing = true)
+public class AccountStatsEngine implements MatchDetailsSaveListener {
+
+    private static final int MAGIC = 0x4B565354; // "KVST"
+    private static final int VERSION = 1;
+
+    private static final int EPOCH_DAY_BITS = 20;
+
+    private static final String DOTA2_DB_SUB_DIRECTORY_NAME = "dota2";
+    private static final String STATS_DIRECTORY_NAME = "STATS";
+    private static final String SNAPSHOT_FILE_NAME = "account-stats.bin";
+
+    private final SnapshotFile snapshotFile;
+    private final boolean reconcileEnabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //lazy, the match store itself depends on its save listeners
+    @Autowired
+    private ObjectProvider<MatchDetailsDao<MatchDetailsDto>> matchDetailsDaoProvider;
+
+    private LongHashSet aggregatedMatchIds = new LongHashSet();
+    private StatsTable accountStats = new StatsTable();
+    private StatsTable accountHeroStats = new StatsTable();
+    private StatsTable accountDayStats = new StatsTable();
+    private int maxHeroId;
+
+    public AccountStatsEngine(Environment environment) {
+        String dbBaseUrl = environment.getProperty("kv.datasource.url");
+        Path snapshotPath = dbBaseUrl != null ? Path.of(dbBaseUrl, DOTA2_DB_SUB_DIRECTORY_NAME, STATS_DIRECTORY_NAME, SNAPSHOT_FILE_NAME) : null;
+        this.snapshotFile = new SnapshotFile(snapshotPath, MAGIC, VERSION, "account-stats",
+                environment.getProperty("kv.stats.flush-interval-seconds", Long.class, 30L), this::writeSnapshot);
+        this.reconcileEnabled = environment.getProperty("kv.stats.reconcile.enabled", Boolean.class, true);
+        snapshotFile.load(this::readSnapshot);
+    }
+
+    /**
+     * Replays the stored matches missing from the aggregates, in the background.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!reconcileEnabled)
+            return;
+        MatchDetailsDao<MatchDetailsDto> matchDetailsDao = matchDetailsDaoProvider.getIfAvailable();
+        if (matchDetailsDao != null)
+            Thread.ofVirtual().name("account-stats-reconcile").start(() ->
+                    MatchStoreReconciler.reconcile("AccountStatsEngine", matchDetailsDao, this::isAggregated, this::aggregate));
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshotFile.close();
+    }
+
+    @Override
+    public void onSaved(MatchDetailsDto matchDetailsDto) {
+        aggregate(matchDetailsDto);
+    }
+
+    /**
+     * Adds the match to the aggregates of all its (non anonymous) players.
+     *
+     * @return false if the match was already aggregated.
+     */
+    public boolean aggregate(MatchDetailsDto matchDetailsDto) {
+        if (matchDetailsDto.getPlayers() == null)
+            return false;
+
+        long startTime = matchDetailsDto.getStart_time();
+        long epochDay = MatchTimeIndex.istEpochDay(startTime);
+        lock.writeLock().lock();
+        try {
+            if (!aggregatedMatchIds.add(matchDetailsDto.getMatch_id()))
+                return false;
+
+            for (PlayersDto player : matchDetailsDto.getPlayers()) {
+                long accountId = player.getAccount_id();
+                if (!AccountHeroKeys.isIdentifiedAccount(accountId))
+                    continue;
+
+                boolean won = CommonUtilityService.hasPlayerWonTheMatch(matchDetailsDto.isRadiant_win(), player.getPlayer_slot());
+                accumulate(accountStats, accountId, player, won, startTime);
+                accumulate(accountHeroStats, AccountHeroKeys.accountHeroKey(accountId, player.getHero_id()), player, won, startTime);
+                accumulate(accountDayStats, dayKey(accountId, epochDay), player, won, startTime);
+                maxHeroId = Math.max(maxHeroId, player.getHero_id());
+            }
+            snapshotFile.markDirty();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public StatsSummary getAccountStats(long accountId) {
+        return summary(accountStats, accountId);
+    }
+
+    public StatsSummary getHeroStats(long accountId, int heroId) {
+        return summary(accountHeroStats, AccountHeroKeys.accountHeroKey(accountId, heroId));
+    }
+
+    /**
+     * @return stats of every hero played by given account, by hero ID.
+     */
+    public Map<Integer, StatsSummary> getHeroStats(long accountId) {
+        Map<Integer, StatsSummary> heroStats = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (int heroId = 0; heroId <= maxHeroId; heroId++) {
+                int row = accountHeroStats.findRow(AccountHeroKeys.accountHeroKey(accountId, heroId));
+                if (row != StatsTable.NO_ROW)
+                    heroStats.put(heroId, toSummary(accountHeroStats, row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return heroStats;
+    }
+
+    /**
+     * @param istDate calendar day in IST, the zone used throughout this library
+     */
+    public StatsSummary getDayStats(long accountId, LocalDate istDate) {
+        return summary(accountDayStats, dayKey(accountId, istDate.toEpochDay()));
+    }
+
+    public int getAggregatedMatchCount() {
+        lock.readLock().lock();
+        try {
+            return aggregatedMatchIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isAggregated(long matchId) {
+        lock.readLock().lock();
+        try {
+            return aggregatedMatchIds.contains(matchId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot if anything changed since the last one.
+     */
+    public void flush() {
+        snapshotFile.flush();
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(maxHeroId);
+            out.writeInt(aggregatedMatchIds.size());
+            for (long matchId : aggregatedMatchIds.toArray())
+                out.writeLong(matchId);
+            accountStats.writeTo(out);
+            accountHeroStats.writeTo(out);
+            accountDayStats.writeTo(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        int snapshotMaxHeroId = in.readInt();
+        int matchCount = in.readInt();
+        LongHashSet snapshotMatchIds = new LongHashSet(matchCount);
+        for (int i = 0; i < matchCount; i++)
+            snapshotMatchIds.add(in.readLong());
+        StatsTable snapshotAccountStats = StatsTable.readFrom(in);
+        StatsTable snapshotAccountHeroStats = StatsTable.readFrom(in);
+        StatsTable snapshotAccountDayStats = StatsTable.readFrom(in);
+
+        //only applied once fully read, a truncated snapshot leaves the engine empty
+        this.maxHeroId = snapshotMaxHeroId;
+        this.aggregatedMatchIds = snapshotMatchIds;
+        this.accountStats = snapshotAccountStats;
+        this.accountHeroStats = snapshotAccountHeroStats;
+        this.accountDayStats = snapshotAccountDayStats;
+        log.info("Loaded account stats snapshot: {} matches, {} accounts", matchCount, accountStats.size());
+    }
+
+    private StatsSummary summary(StatsTable table, long key) {
+        lock.readLock().lock();
+        try {
+            int row = table.findRow(key);
+            return row == StatsTable.NO_ROW ? StatsSummary.EMPTY : toSummary(table, row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static StatsSummary toSummary(StatsTable table, int row) {
+        return new StatsSummary(
+                table.get(row, StatsTable.GAMES),
+                table.get(row, StatsTable.WINS),
+                table.get(row, StatsTable.KILLS),
+                table.get(row, StatsTable.DEATHS),
+                table.get(row, StatsTable.ASSISTS),
+                table.get(row, StatsTable.LAST_PLAYED),
+                table.get(row, StatsTable.CURRENT_STREAK),
+                table.get(row, StatsTable.LONGEST_WIN_STREAK));
+    }
+
+    private static void accumulate(StatsTable table, long key, PlayersDto player, boolean won, long startTime) {
+        int row = table.getOrCreateRow(key);
+        table.add(row, StatsTable.GAMES, 1);
+        table.add(row, StatsTable.WINS, won ? 1 : 0);
+        table.add(row, StatsTable.KILLS, player.getKills());
+        table.add(row, StatsTable.DEATHS, player.getDeaths());
+        table.add(row, StatsTable.ASSISTS, player.getAssists());
+
+        if (startTime >= table.get(row, StatsTable.LAST_PLAYED)) {
+            table.set(row, StatsTable.LAST_PLAYED, startTime);
+            long streak = table.get(row, StatsTable.CURRENT_STREAK);
+            streak = won ? Math.max(streak, 0) + 1 : Math.min(streak, 0) - 1;
+            table.set(row, StatsTable.CURRENT_STREAK, streak);
+            if (streak > table.get(row, StatsTable.LONGEST_WIN_STREAK))
+                table.set(row, StatsTable.LONGEST_WIN_STREAK, streak);
+        }
+    }
+
+    private static long dayKey(long accountId, long epochDay) {
+        return accountId << EPOCH_DAY_BITS | (epochDay & ((1L << EPOCH_DAY_BITS) - 1));
+    }
+}
@@ -0,0 +1,29 @@
+package com.kv.stats;
+
+/**
+ * Aggregated counters of an account (overall, per hero or per day).
+ *
+ * @param lastPlayed       start_time (epoch seconds) of the most recent match
+ * @param currentStreak    positive -> consecutive wins, negative -> consecutive losses (by match start time)
+ * @param longestWinStreak longest run of consecutive wins seen
+ */
+public record StatsSummary(long games, long wins, long kills, long deaths, long assists, long lastPlayed,
+                           long currentStreak, long longestWinStreak) {
+
+    public static final StatsSummary EMPTY = new StatsSummary(0, 0, 0, 0, 0, 0, 0, 0);
+
+    public long losses() {
+        return games - wins;
+    }
+
+    public double winRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return (kills + assists) / deaths, deaths counted as at least 1.
+     */
+    public double kda() {
+        return (double) (kills + assists) / Math.max(1, deaths);
+    }
+}
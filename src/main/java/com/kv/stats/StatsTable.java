@@ -0,0 +1,88 @@
+package com.kv.stats;
+
+import com.kv.util.LongLongHashMap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed column counter table keyed by a long: key -> row via {@link LongLongHashMap}, all counters of all rows in one
+ * row-major {@code long[]}, so an update touches a single cache line and nothing is boxed. Not thread-safe.
+ */
+final class StatsTable {
+
+    static final int GAMES = 0;
+    static final int WINS = 1;
+    static final int KILLS = 2;
+    static final int DEATHS = 3;
+    static final int ASSISTS = 4;
+    static final int LAST_PLAYED = 5;
+    //positive -> consecutive wins, negative -> consecutive losses
+    static final int CURRENT_STREAK = 6;
+    static final int LONGEST_WIN_STREAK = 7;
+    static final int COLUMN_COUNT = 8;
+
+    static final int NO_ROW = -1;
+
+    private final LongLongHashMap rowsByKey = new LongLongHashMap();
+    private long[] keysByRow = new long[64];
+    private long[] cells = new long[64 * COLUMN_COUNT];
+    private int rowCount;
+
+    int findRow(long key) {
+        long row = rowsByKey.get(key);
+        return row == LongLongHashMap.NO_VALUE ? NO_ROW : (int) row;
+    }
+
+    int getOrCreateRow(long key) {
+        int row = findRow(key);
+        if (row != NO_ROW)
+            return row;
+
+        if (rowCount == keysByRow.length) {
+            keysByRow = Arrays.copyOf(keysByRow, rowCount << 1);
+            cells = Arrays.copyOf(cells, (rowCount << 1) * COLUMN_COUNT);
+        }
+        keysByRow[rowCount] = key;
+        rowsByKey.put(key, rowCount);
+        return rowCount++;
+    }
+
+    long get(int row, int column) {
+        return cells[row * COLUMN_COUNT + column];
+    }
+
+    void set(int row, int column, long value) {
+        cells[row * COLUMN_COUNT + column] = value;
+    }
+
+    void add(int row, int column, long delta) {
+        cells[row * COLUMN_COUNT + column] += delta;
+    }
+
+    int size() {
+        return rowCount;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            out.writeLong(keysByRow[row]);
+            for (int column = 0; column < COLUMN_COUNT; column++)
+                out.writeLong(get(row, column));
+        }
+    }
+
+    static StatsTable readFrom(DataInputStream in) throws IOException {
+        StatsTable table = new StatsTable();
+        int rowCount = in.readInt();
+        for (int i = 0; i < rowCount; i++) {
+            int row = table.getOrCreateRow(in.readLong());
+            for (int column = 0; column < COLUMN_COUNT; column++)
+                table.set(row, column, in.readLong());
+        }
+        return table;
+    }
+}
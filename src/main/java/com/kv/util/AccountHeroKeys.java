@@ -0,0 +1,38 @@
+package com.kv.util;
+
+/**
+ * Account ID rules and the (account ID, hero ID) key packing shared by the in-memory structures keyed per account and
+ * hero (ex: {@link com.kv.stats.AccountStatsEngine}, {@link com.kv.dao.MatchSecondaryIndex}). Keys are part of their
+ * snapshot formats, so the packing must not change.
+ */
+public final class AccountHeroKeys {
+
+    /**
+     * 32-bit account ID steam reports for players hiding their match data.
+     */
+    public static final long ANONYMOUS_ACCOUNT_ID = 4294967295L;
+    public static final int HERO_ID_BITS = 16;
+    public static final int MAX_HERO_ID = (1 << HERO_ID_BITS) - 1;
+
+    private AccountHeroKeys() {
+    }
+
+    /**
+     * @return false for missing (0) and anonymous account IDs.
+     */
+    public static boolean isIdentifiedAccount(long accountId) {
+        return accountId > 0 && accountId < ANONYMOUS_ACCOUNT_ID;
+    }
+
+    public static boolean isKnownHero(int heroId) {
+        return heroId > 0 && heroId <= MAX_HERO_ID;
+    }
+
+    public static long accountHeroKey(long accountId, int heroId) {
+        return accountId << HERO_ID_BITS | (heroId & MAX_HERO_ID);
+    }
+
+    public static long accountIdOf(long accountHeroKey) {
+        return accountHeroKey >>> HERO_ID_BITS;
+    }
+}
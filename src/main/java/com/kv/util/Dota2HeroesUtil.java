@@ -7,11 +7,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 public interface Dota2HeroesUtil {
     Logger log = LoggerFactory.getLogger(Dota2HeroesUtil.class);
@@ -19,38 +17,37 @@ public interface Dota2HeroesUtil {
     String HERO_LIST_JSON_FILE = "utils/heroinfo.json";
 
     /**
-     * Get Dota2 Hero name for given HeroID. Reads a json file containing all HeroIDs and their equivalent Hero names.
+     * Get Dota2 Hero name for given HeroID. Looks up the in-memory {@link HeroRegistry}, which is built once from a json file containing all HeroIDs and their equivalent Hero names.
      * @param heroId It is a numeric ID for every Dota2 hero usually in the range of 1 to 135 as of patch 7.29.
      * @return Hero's localized name in String format.
      */
     static String getHeroName(Integer heroId) throws Exception {
-        List<HeroesDto> heroesDtoList = new ArrayList<>();
-        HeroesDto heroDto = null;
-        String heroName = null;
-
-//        try {
-//            File heroInfoJsonFile = new File(Objects.requireNonNull(Thread.currentThread().getContextClassLoader().getResource(jsonFileLocation)).toURI());
-//            Map<String, Object> heroesInfo = objectMapper.readValue(heroInfoJsonFile, new TypeReference<>() {});
-
-            heroesDtoList = Dota2HeroesUtil.getAllHeroes();
-//        } catch (URISyntaxException | IOException e) {
-//            log.error("Exception occurred while reading/converting HeroInfo json file");
-//            e.printStackTrace();
-//        }
+        String heroName = heroId == null ? null : HeroRegistry.getInstance().getLocalizedName(heroId);
 
-        try {
-            heroDto = heroesDtoList.stream().filter(x -> x.getId() == (heroId)).findFirst().get();
-            heroName = heroDto.getLocalized_name();
-        } catch (Exception e) {
+        if (heroName == null) {
             log.info("Hero not Found for heroId: {}", heroId);
-            log.error(e.getMessage());
             throw new Exception("Hero not found for heroID: " + heroId);
         }
 
         return heroName;
     }
 
+    /**
+     * Get Dota2 HeroID for given localized ("Anti-Mage") or internal ("antimage") hero name, case-insensitive.
+     * @return HeroID or null if no hero matches.
+     */
+    static Integer getHeroId(String heroName) {
+        return HeroRegistry.getInstance().getHeroId(heroName);
+    }
+
     static List<HeroesDto> getAllHeroes() {
+        return new ArrayList<>(HeroRegistry.getInstance().getHeroes());
+    }
+
+    /**
+     * Reads and parses the bundled hero list json file, used to build the {@link HeroRegistry}.
+     */
+    static List<HeroesDto> loadBundledHeroes() {
         List<HeroesDto> heroesDtoList = new ArrayList<>();
         ObjectMapper objectMapper = new ObjectMapper();
 
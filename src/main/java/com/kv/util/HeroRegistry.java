@@ -0,0 +1,95 @@
+package com.kv.util;
+
+import com.kv.hero.dto.HeroesDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Immutable hero lookup tables: a dense array indexed by hero ID for allocation-free ID -> localized name lookups,
+ *     plus a (lower-cased) localized/internal name -> ID map.
+ * </p>
+ * The current registry is built once, lazily, from the bundled {@value Dota2HeroesUtil#HERO_LIST_JSON_FILE} and can be
+ * swapped atomically via {@link #refresh(Collection)} when a newer hero list is fetched remotely.
+ */
+public final class HeroRegistry {
+
+    private static volatile HeroRegistry current;
+
+    private final String[] localizedNamesById;
+    private final Map<String, Integer> idsByName;
+    private final List<HeroesDto> heroes;
+
+    private HeroRegistry(Collection<HeroesDto> heroes) {
+        int maxHeroId = heroes.stream().mapToInt(HeroesDto::getId).max().orElse(0);
+        this.localizedNamesById = new String[maxHeroId + 1];
+        Map<String, Integer> idsByName = new HashMap<>();
+        for (HeroesDto hero : heroes) {
+            localizedNamesById[hero.getId()] = hero.getLocalized_name();
+            if (hero.getLocalized_name() != null)
+                idsByName.put(hero.getLocalized_name().toLowerCase(Locale.ROOT), hero.getId());
+            if (hero.getName() != null)
+                idsByName.put(hero.getName().toLowerCase(Locale.ROOT), hero.getId());
+        }
+        this.idsByName = Map.copyOf(idsByName);
+        this.heroes = List.copyOf(heroes);
+    }
+
+    public static HeroRegistry getInstance() {
+        HeroRegistry registry = current;
+        if (registry == null) {
+            synchronized (HeroRegistry.class) {
+                registry = current;
+                if (registry == null) {
+                    registry = new HeroRegistry(Dota2HeroesUtil.loadBundledHeroes());
+                    current = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Publishes a new registry built from given hero list. Heroes without a localized name keep the one known so far,
+     * so a partial remote list never loses names.
+     */
+    public static synchronized void refresh(Collection<HeroesDto> heroes) {
+        if (heroes == null || heroes.isEmpty())
+            return;
+
+        Map<Integer, HeroesDto> mergedHeroes = new HashMap<>();
+        getInstance().heroes.forEach(hero -> mergedHeroes.put(hero.getId(), hero));
+        heroes.stream()
+                .filter(hero -> hero.getId() > 0 && hero.getLocalized_name() != null)
+                .forEach(hero -> mergedHeroes.put(hero.getId(), hero));
+        current = new HeroRegistry(new ArrayList<>(mergedHeroes.values()));
+    }
+
+    /**
+     * @return localized name for given hero ID, or null if unknown.
+     */
+    public String getLocalizedName(int heroId) {
+        return heroId >= 0 && heroId < localizedNamesById.length ? localizedNamesById[heroId] : null;
+    }
+
+    /**
+     * @param heroName localized ("Anti-Mage") or internal ("antimage") name, case-insensitive.
+     * @return hero ID, or null if unknown.
+     */
+    public Integer getHeroId(String heroName) {
+        return heroName == null ? null : idsByName.get(heroName.toLowerCase(Locale.ROOT));
+    }
+
+    public List<HeroesDto> getHeroes() {
+        return heroes;
+    }
+
+    public int size() {
+        return heroes.size();
+    }
+}
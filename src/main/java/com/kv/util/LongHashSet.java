@@ -0,0 +1,183 @@
+package com.kv.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing (linear probing) set of longs without boxing, the set counterpart of {@link LongLongHashMap}.
+ * Not thread-safe; callers guard it with their own lock or publish it as an immutable snapshot.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY_KEY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int size;
+    private int resizeThreshold;
+
+    private boolean hasZeroKey;
+
+    public LongHashSet() {
+        this(64);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public static LongHashSet copyOf(LongHashSet other) {
+        LongHashSet copy = new LongHashSet(other.size);
+        other.forEach(copy::add);
+        return copy;
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY_KEY) {
+            return hasZeroKey;
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return true;
+            }
+            if (existing == EMPTY_KEY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return true if the key was not present before.
+     */
+    public boolean add(long key) {
+        if (key == EMPTY_KEY) {
+            if (hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = true;
+            size++;
+            return true;
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return false;
+            }
+            if (existing == EMPTY_KEY) {
+                keys[slot] = key;
+                if (++size > resizeThreshold) {
+                    rehash(keys.length << 1);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the key was present.
+     */
+    public boolean remove(long key) {
+        if (key == EMPTY_KEY) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            size--;
+            return true;
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == EMPTY_KEY) {
+                return false;
+            }
+            if (existing == key) {
+                closeGap(slot);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(EMPTY_KEY);
+        }
+        for (long key : keys) {
+            if (key != EMPTY_KEY) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] array = new long[size];
+        int[] position = {0};
+        forEach(key -> array[position[0]++] = key);
+        return array;
+    }
+
+    /**
+     * Backward shift deletion, keeps probe chains intact without tombstones.
+     */
+    private void closeGap(int gapSlot) {
+        int mask = keys.length - 1;
+        int slot = gapSlot;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == EMPTY_KEY) {
+                break;
+            }
+            int idealSlot = mix(key) & mask;
+            if (((slot - idealSlot) & mask) >= ((slot - gapSlot) & mask)) {
+                keys[gapSlot] = key;
+                gapSlot = slot;
+            }
+        }
+        keys[gapSlot] = EMPTY_KEY;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (long key : oldKeys) {
+            if (key != EMPTY_KEY) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,64 @@
+package com.kv.util;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, duplicate free, growable list of longs (ex: the match IDs of one account), 8 bytes per entry without boxing.
+ * Values arriving in ascending order, the common case for match IDs, are appended; others are inserted in place.
+ * Not thread-safe; callers guard it with their own lock.
+ */
+public class LongPostingList {
+
+    private long[] values;
+    private int size;
+
+    public LongPostingList() {
+        this(4);
+    }
+
+    public LongPostingList(int expectedSize) {
+        this.values = new long[Math.max(1, expectedSize)];
+    }
+
+    /**
+     * @return false if the value was already present.
+     */
+    public boolean add(long value) {
+        int index = size == 0 || value > values[size - 1] ? size : Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0 && index < size)
+            return false;
+        int insertionPoint = index >= 0 ? index : -index - 1;
+
+        if (size == values.length)
+            values = Arrays.copyOf(values, values.length + (values.length >> 1) + 1);
+        System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+        values[insertionPoint] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the values in ascending order.
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,98 @@
+package com.kv.util;
+
+import com.kv.matchdetails.dto.MatchesDto;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ *     Matches sorted by {@code start_time} alongside a primitive array of their start times, so a time range query is
+ *     two binary searches plus a sub list view, without converting any start time into a date.
+ * </p>
+ * Day boundaries are precomputed as IST (UTC+05:30, the zone used throughout this library) epoch seconds via
+ * {@link #istDayStartEpochSecond(LocalDate)}. Immutable once built.
+ */
+public final class MatchTimeIndex {
+
+    public static final int IST_OFFSET_SECONDS = 19800;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final long[] startTimes;
+    private final List<MatchesDto> matchesByStartTime;
+
+    private MatchTimeIndex(MatchesDto[] sortedMatches) {
+        this.startTimes = new long[sortedMatches.length];
+        for (int i = 0; i < sortedMatches.length; i++)
+            startTimes[i] = sortedMatches[i].getStart_time();
+        this.matchesByStartTime = List.of(sortedMatches);
+    }
+
+    /**
+     * Match histories come newest first, which the (TimSort) sort detects as a single descending run, so building the
+     * index from them is linear.
+     */
+    public static MatchTimeIndex of(Collection<MatchesDto> matches) {
+        MatchesDto[] sortedMatches = matches.toArray(new MatchesDto[0]);
+        Arrays.sort(sortedMatches, Comparator.comparingLong(MatchesDto::getStart_time));
+        return new MatchTimeIndex(sortedMatches);
+    }
+
+    /**
+     * @return matches with {@code fromEpochSecond <= start_time < toEpochSecond}, by ascending start time.
+     */
+    public List<MatchesDto> startedBetween(long fromEpochSecond, long toEpochSecond) {
+        if (fromEpochSecond >= toEpochSecond)
+            return List.of();
+        return matchesByStartTime.subList(lowerBound(fromEpochSecond), lowerBound(toEpochSecond));
+    }
+
+    /**
+     * @return matches with {@code start_time >= fromEpochSecond}, by ascending start time.
+     */
+    public List<MatchesDto> startedAtOrAfter(long fromEpochSecond) {
+        return matchesByStartTime.subList(lowerBound(fromEpochSecond), startTimes.length);
+    }
+
+    public int size() {
+        return startTimes.length;
+    }
+
+    /**
+     * @return epoch second of 00:00 IST of given date.
+     */
+    public static long istDayStartEpochSecond(LocalDate date) {
+        return date.toEpochDay() * SECONDS_PER_DAY - IST_OFFSET_SECONDS;
+    }
+
+    /**
+     * @return IST calendar day (epoch day) the given epoch second falls on.
+     */
+    public static long istEpochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond + IST_OFFSET_SECONDS, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return seconds elapsed since 00:00 IST of the day the given epoch second falls on.
+     */
+    public static long istSecondOfDay(long epochSecond) {
+        return Math.floorMod(epochSecond + IST_OFFSET_SECONDS, SECONDS_PER_DAY);
+    }
+
+    //index of the first start time >= given one
+    private int lowerBound(long epochSecond) {
+        int low = 0;
+        int high = startTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startTimes[mid] < epochSecond)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
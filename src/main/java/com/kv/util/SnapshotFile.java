@@ -0,0 +1,147 @@
+package com.kv.util;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *     Snapshot file of in-memory state derived from the match store (ex: account aggregates, secondary indexes): a
+ *     MAGIC / VERSION header followed by the owner's payload, written to a temp file and atomically moved into place.
+ * </p>
+ * <p>
+ *     The owner calls {@link #markDirty()} after every change; a daemon thread flushes every
+ *     {@code flushIntervalSeconds} when dirty, and {@link #close()} waits for a running flush before writing the final
+ *     one. Flushes are serialized on their own mutex, so the temp file never has two writers. The dirty flag is cleared
+ *     before the payload is written, a change racing with the flush marks it dirty again for the next one.
+ * </p>
+ * A null file disables snapshots, every method is then a no-op.
+ */
+@Log4j2
+public class SnapshotFile {
+
+    @FunctionalInterface
+    public interface PayloadWriter {
+        /**
+         * Writes the owner's state, taking whatever lock guards it.
+         */
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface PayloadReader {
+        void readFrom(DataInputStream in) throws IOException;
+    }
+
+    private final Path file;
+    private final int magic;
+    private final int version;
+    private final String name;
+    private final PayloadWriter payloadWriter;
+
+    private final Object flushMutex = new Object();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * @param name                 used in log messages and as flush thread name
+     * @param flushIntervalSeconds 0 flushes on {@link #close()} only
+     */
+    public SnapshotFile(Path file, int magic, int version, String name, long flushIntervalSeconds, PayloadWriter payloadWriter) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.name = name;
+        this.payloadWriter = payloadWriter;
+
+        if (file != null && flushIntervalSeconds > 0) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name + "-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.flushExecutor = null;
+        }
+    }
+
+    /**
+     * Reads the snapshot, if there is one in the expected format.
+     *
+     * @return false if there was none, or it could not be read; the reader's partial state must be discarded then.
+     */
+    public boolean load(PayloadReader payloadReader) {
+        if (file == null || !Files.exists(file))
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                log.error("Ignoring {} snapshot with unknown format: {}", name, file);
+                return false;
+            }
+            payloadReader.readFrom(in);
+            return true;
+        } catch (IOException e) {
+            log.error("Error occurred while reading {} snapshot, starting empty: {}", name, file, e);
+            return false;
+        }
+    }
+
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Writes a snapshot if anything changed since the last one.
+     */
+    public void flush() {
+        if (file == null)
+            return;
+
+        synchronized (flushMutex) {
+            if (!dirty.getAndSet(false))
+                return;
+            try {
+                Files.createDirectories(file.getParent());
+                Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    out.writeInt(magic);
+                    out.writeInt(version);
+                    payloadWriter.writeTo(out);
+                }
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                dirty.set(true);
+                log.error("Error occurred while writing {} snapshot: {}", name, file, e);
+            }
+        }
+    }
+
+    /**
+     * Stops the periodic flush, waiting for a running one, then writes the final snapshot.
+     */
+    public void close() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                if (!flushExecutor.awaitTermination(30, TimeUnit.SECONDS))
+                    log.warn("{} snapshot flush still running, writing the final one after it", name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        //serialized with a still running flush by the mutex
+        flush();
+    }
+}
@@ -0,0 +1,71 @@
+package com.kv.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ *     Streams a Steam Web API response body straight into the typed DTO of its {@code "result"} object.
+ *     Steam wraps every payload as {@code {"result": {...}}}; the parser skips any sibling fields and binds only the
+ *     result subtree, so no intermediate Map, String or container object is materialized.
+ * </p>
+ * Returns null for an empty body or a missing result, and logs + returns null when the json cannot be bound.
+ */
+@Log4j2
+public class SteamWebApiResultExtractor<T> implements ResponseExtractor<T> {
+
+    private static final String RESULT_FIELD_NAME = "result";
+
+    private final ObjectReader objectReader;
+    private final boolean wholeBody;
+
+    private SteamWebApiResultExtractor(ObjectReader objectReader, boolean wholeBody) {
+        this.objectReader = objectReader;
+        this.wholeBody = wholeBody;
+    }
+
+    /**
+     * Binds the {@code "result"} object of the response.
+     */
+    public static <T> SteamWebApiResultExtractor<T> forResult(ObjectMapper objectMapper, Class<T> resultType) {
+        return new SteamWebApiResultExtractor<>(objectMapper.readerFor(resultType), false);
+    }
+
+    /**
+     * Binds the whole response body, for callers still exposing the response container.
+     */
+    public static <T> SteamWebApiResultExtractor<T> forBody(ObjectMapper objectMapper, JavaType bodyType) {
+        return new SteamWebApiResultExtractor<>(objectMapper.readerFor(bodyType), true);
+    }
+
+    @Override
+    public T extractData(ClientHttpResponse response) throws IOException {
+        try (JsonParser parser = objectReader.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+            if (wholeBody)
+                return objectReader.readValue(parser);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                if (RESULT_FIELD_NAME.equals(fieldName))
+                    return objectReader.readValue(parser);
+                parser.skipChildren();
+            }
+            return null;
+        } catch (JsonProcessingException e) {
+            log.error("Error occurred while converting json response to Java model - {}", e.getMessage());
+            return null;
+        }
+    }
+}
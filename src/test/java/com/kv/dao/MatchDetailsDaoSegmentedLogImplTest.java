@@ -0,0 +1,133 @@
+package com.kv.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kv.matchdetails.dto.MatchDetailsDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchDetailsDaoSegmentedLogImplTest {
+
+    @TempDir
+    Path dbBaseDirectory;
+
+    private MatchDetailsDaoSegmentedLogImpl dao;
+
+    @AfterEach
+    void closeDao() {
+        if (dao != null)
+            dao.close();
+    }
+
+    @Test
+    void reopenRebuildsIndexFromSegments() {
+        dao = openDao();
+        dao.save(match(1, 100));
+        dao.saveAll(List.of(match(2, 200), match(3, 300)));
+        reopenDao();
+
+        assertEquals(200, dao.findByMatchId(2L).getStart_time());
+        BulkLookupResult<MatchDetailsDto> result = dao.findByMatchIds(List.of(1L, 2L, 3L, 4L));
+        assertEquals(3, result.found().size());
+        assertEquals(300, result.found().get(3L).getStart_time());
+        assertEquals(Set.of(4L), result.missing());
+    }
+
+    @Test
+    void savingStoredMatchDoesNotAppend() throws IOException {
+        dao = openDao();
+        dao.save(match(1, 100));
+        long segmentSize = Files.size(segmentPath());
+
+        dao.save(match(1, 999));
+        dao.saveAll(List.of(match(1, 999)));
+
+        assertEquals(segmentSize, Files.size(segmentPath()));
+        assertEquals(100, dao.findByMatchId(1L).getStart_time());
+    }
+
+    @Test
+    void tornTailIsTruncatedOnReopen() throws IOException {
+        dao = openDao();
+        dao.saveAll(List.of(match(1, 100), match(2, 200)));
+        dao.close();
+        long segmentSize = Files.size(segmentPath());
+
+        //crash mid-write: header of a 1 KB record followed by a few payload bytes
+        try (FileChannel channel = FileChannel.open(segmentPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + 8).putInt(1024).putLong(3).putInt(0).flip());
+        }
+        dao = openDao();
+
+        assertEquals(segmentSize, Files.size(segmentPath()));
+        assertNotNull(dao.findByMatchId(1L));
+        assertNotNull(dao.findByMatchId(2L));
+        assertNull(dao.findByMatchId(3L));
+
+        //appends continue right after the last complete record
+        dao.save(match(3, 300));
+        reopenDao();
+        assertEquals(300, dao.findByMatchId(3L).getStart_time());
+    }
+
+    @Test
+    void checksumMismatchReportsMatchAsMissing() throws IOException {
+        dao = openDao();
+        dao.saveAll(List.of(match(1, 100), match(2, 200)));
+        dao.close();
+
+        //flip the last payload byte, which belongs to match 2
+        try (FileChannel channel = FileChannel.open(segmentPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long lastByte = channel.size() - 1;
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, lastByte);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~buffer.get(0)}), lastByte);
+        }
+        dao = openDao();
+
+        assertNotNull(dao.findByMatchId(1L));
+        assertNull(dao.findByMatchId(2L));
+        BulkLookupResult<MatchDetailsDto> result = dao.findByMatchIds(List.of(1L, 2L));
+        assertTrue(result.found().containsKey(1L));
+        assertTrue(result.missing().contains(2L));
+    }
+
+    private MatchDetailsDaoSegmentedLogImpl openDao() {
+        MockEnvironment environment = new MockEnvironment().withProperty("kv.datasource.url", dbBaseDirectory.toString());
+        MatchDetailsDaoSegmentedLogImpl segmentedLog = new MatchDetailsDaoSegmentedLogImpl(environment);
+        ReflectionTestUtils.setField(segmentedLog, "matchDetailsCodec", new MatchDetailsCodec(new ObjectMapper(), environment));
+        return segmentedLog;
+    }
+
+    private void reopenDao() {
+        dao.close();
+        dao = openDao();
+    }
+
+    private Path segmentPath() {
+        return dbBaseDirectory.resolve("dota2").resolve("MATCH_DETAILS_LOG").resolve("segment-000001.log");
+    }
+
+    private static MatchDetailsDto match(long matchId, long startTime) {
+        MatchDetailsDto matchDetailsDto = new MatchDetailsDto();
+        matchDetailsDto.setMatch_id(matchId);
+        matchDetailsDto.setStart_time(startTime);
+        return matchDetailsDto;
+    }
+}